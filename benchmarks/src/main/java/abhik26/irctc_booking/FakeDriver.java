@@ -0,0 +1,115 @@
+package abhik26.irctc_booking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/*
+ * A driver that answers without a browser, so that only the work done in this process is measured: every
+ * synchronous script returns a train list of the given size and every asynchronous script (the waits of
+ * PageWaiter) finds the element of its first condition at once, with all conditions probed as matching.
+ */
+final class FakeDriver {
+
+	private FakeDriver() {
+	}
+
+	static WebDriver create(int trainCount) {
+		List<Object> trainList = trainList(trainCount);
+		WebElement element = element();
+
+		return (WebDriver) java.lang.reflect.Proxy.newProxyInstance(FakeDriver.class.getClassLoader(),
+				new Class<?>[] { WebDriver.class, JavascriptExecutor.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+						case "executeScript":
+							return trainList;
+						case "executeAsyncScript":
+							return awaitResult((List<?>) ((Object[]) args[1])[0], element);
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						case "toString":
+							return "FakeDriver";
+						default:
+							return null;
+					}
+				});
+	}
+
+	static WebElement element() {
+		return (WebElement) java.lang.reflect.Proxy.newProxyInstance(FakeDriver.class.getClassLoader(),
+				new Class<?>[] { WebElement.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						case "toString":
+							return "FakeElement";
+						default:
+							return null;
+					}
+				});
+	}
+
+	private static Map<String, Object> awaitResult(List<?> conditions, WebElement element) {
+		List<Map<String, Object>> probes = new ArrayList<>();
+
+		for (int i = 0; i < conditions.size(); i++) {
+			Map<String, Object> probe = new LinkedHashMap<>();
+			probe.put("matched", true);
+			probe.put("micros", 40.0 + i);
+			probes.add(probe);
+		}
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("index", 0L);
+		result.put("element", element);
+		result.put("probes", probes);
+		return result;
+	}
+
+	// Train cards as returned by the extract script of TrainListSnapshot, each with the usual classes.
+	private static List<Object> trainList(int trainCount) {
+		String[] classes = { "1A", "2A", "3A", "3E", "SL" };
+		List<Object> trains = new ArrayList<>();
+
+		for (int i = 0; i < trainCount; i++) {
+			List<Object> classCells = new ArrayList<>();
+			List<Object> dates = new ArrayList<>();
+
+			for (String trainClass : classes) {
+				Map<String, Object> classCell = new LinkedHashMap<>();
+				classCell.put("code", trainClass);
+				classCell.put("cell", element());
+				classCells.add(classCell);
+			}
+
+			for (int day = 20; day < 26; day++) {
+				Map<String, Object> date = new LinkedHashMap<>();
+				date.put("date", "Thu, " + day + " Oct");
+				date.put("cell", element());
+				date.put("status", day % 2 == 0 ? "AVAILABLE-0012" : "WL 23");
+				date.put("available", day % 2 == 0);
+				dates.add(date);
+			}
+
+			Map<String, Object> train = new LinkedHashMap<>();
+			train.put("number", String.valueOf(12301 + i));
+			train.put("card", element());
+			train.put("classes", classCells);
+			train.put("dates", dates);
+			train.put("bookNow", element());
+			trains.add(train);
+		}
+
+		return Collections.unmodifiableList(trains);
+	}
+}
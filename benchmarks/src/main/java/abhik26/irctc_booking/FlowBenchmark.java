@@ -0,0 +1,72 @@
+package abhik26.irctc_booking;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/*
+ * The in-process part of the steps after the tatkal start, against a driver which answers at once: reading the
+ * train list into a snapshot and picking the class cell, resolving a catalog locator (conditions, probe
+ * statistics and promotion) and looking elements up in the element cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowBenchmark {
+
+	@Param({ "10", "40" })
+	private int trainCount;
+
+	private WebDriver driver;
+	private PageWaiter waiter;
+	private LocatorCatalog locators;
+	private ElementCache elements;
+	private BookingPlan.PlannedChoice choice;
+
+	@Setup
+	public void setUp() throws Exception {
+		// no statistics of earlier runs, so that every run starts from the catalog order
+		System.setProperty("irctc.runs.dir", Files.createTempDirectory("irctc-benchmark").toString());
+
+		driver = FakeDriver.create(trainCount);
+		waiter = new PageWaiter(driver, Duration.ofSeconds(10));
+		locators = LocatorCatalog.load();
+		elements = new ElementCache(waiter);
+		choice = BookingPlan.compile(BookingRequest.fromProperties(BookingBenchmark.benchmarkProperties()))
+				.getChoices().get(0);
+	}
+
+	@Benchmark
+	public WebElement captureTrainList() {
+		return TrainListSnapshot.capture(driver).getClassCell(String.valueOf(12300 + trainCount),
+				choice.getTrainClassCode());
+	}
+
+	@Benchmark
+	public WebElement resolveLocator() {
+		return locators.find(waiter, "search.journey_date");
+	}
+
+	@Benchmark
+	public WebElement cachedElement() {
+		return elements.handle(choice.getTrain()).child(By.xpath(".//button")).get();
+	}
+}
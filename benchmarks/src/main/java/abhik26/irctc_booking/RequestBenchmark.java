@@ -0,0 +1,80 @@
+package abhik26.irctc_booking;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The work done before the browser is involved: reading and validating the booking properties (passenger lines
+ * included), compiling the plan with all its locators and the passenger argument of the batch fill.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+
+	private static final String[] PASSENGERS = { "Abhishek Anand | 25 | M | SL", "Isha Anand | 20 | F | SU",
+			"Priyanshu Anand | 15 | M", "Rakesh Kumar | 52 | M | LB", "Sunita Devi | 48 | F | LB",
+			"Ankit Raj | 31 | M | UB" };
+
+	@Param({ "1", "6" })
+	private int passengerCount;
+
+	private Properties properties;
+	private BookingRequest request;
+	private BookingPlan plan;
+
+	@Setup
+	public void setUp() {
+		properties = BookingBenchmark.benchmarkProperties();
+		properties.setProperty("passenger_count", String.valueOf(passengerCount));
+
+		for (int i = 1; i <= PASSENGERS.length; i++) {
+			properties.remove("passenger" + i);
+
+			if (i <= passengerCount) {
+				properties.setProperty("passenger" + i, PASSENGERS[i - 1]);
+			}
+		}
+
+		properties.setProperty("fallback_choices", "12301:3A, 12313:2A, 12305:3A");
+		request = BookingRequest.fromProperties(properties);
+		plan = BookingPlan.compile(request);
+	}
+
+	@Benchmark
+	public BookingRequest parseRequest() {
+		return BookingRequest.fromProperties(properties);
+	}
+
+	@Benchmark
+	public BookingPlan compilePlan() {
+		return BookingPlan.compile(request);
+	}
+
+	@Benchmark
+	public BookingPlan parseAndCompile() {
+		return BookingPlan.compile(BookingRequest.fromProperties(properties));
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> passengerScriptArgument() {
+		return PassengerFormFiller.scriptArgument(plan.getPassengers());
+	}
+}
@@ -0,0 +1,275 @@
+package abhik26.irctc_booking;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.ChromiumDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+/*
+ * Reads the train list and availability JSON responses of the booking server from the DevTools network domain
+ * as they arrive, instead of waiting for the page to render them. The flow can wait for the status of the
+ * requested train, class and date and fail with the exact status (e.g. "WL 23") before the cell is rendered.
+ * Only Chromium based browsers are supported, with other browsers the flow falls back to the rendered page.
+ */
+public class AvailabilityMonitor {
+
+	private static final String TRAIN_LIST_PATH = "/eticketing/protected/mapps1/altAvlEnq/";
+	private static final String AVAILABILITY_PATH = "/eticketing/protected/mapps1/avlFarenquiry/";
+	private static final DateTimeFormatter availabilityDateFormatter = DateTimeFormatter.ofPattern("d-M-uuuu");
+
+	private final Json json = new Json();
+	private final Map<String, String> pendingResponses = new ConcurrentHashMap<>();
+
+	// guarded by this
+	private TrainList trainList = null;
+	private final Map<String, Availability> availabilities = new HashMap<>();
+
+	private DevTools devTools;
+
+	private AvailabilityMonitor() {
+	}
+
+	/*
+	 * Starts monitoring the responses of the driver. Returns null, leaving the flow to the rendered page, if the
+	 * browser does not support DevTools or the session could not be set up.
+	 */
+	public static AvailabilityMonitor install(WebDriver driver) {
+		if (!(driver instanceof ChromiumDriver)) {
+			return null;
+		}
+
+		AvailabilityMonitor monitor = new AvailabilityMonitor();
+
+		try {
+			monitor.devTools = ((HasDevTools) driver).getDevTools();
+			monitor.devTools.createSessionIfThereIsNotOne();
+
+			monitor.devTools.addListener(event("Network.responseReceived"), monitor::onResponseReceived);
+			monitor.devTools.addListener(event("Network.loadingFinished"), monitor::onLoadingFinished);
+			monitor.devTools.send(command("Network.enable", Collections.emptyMap()));
+			return monitor;
+		} catch (RuntimeException e) {
+			BookingLog.error("Unable to monitor the availability responses, availability is read from the page", e);
+			return null;
+		}
+	}
+
+	/*
+	 * Train list received after sinceNanos (System.nanoTime()), null if none arrived within the timeout.
+	 */
+	public synchronized TrainList awaitTrainList(long sinceNanos, Duration timeout) throws InterruptedException {
+		long deadlineNanos = System.nanoTime() + timeout.toNanos();
+
+		while (trainList == null || trainList.receivedNanos - sinceNanos < 0) {
+			if (!await(deadlineNanos)) {
+				return null;
+			}
+		}
+
+		return trainList;
+	}
+
+	/*
+	 * Status of the train class on the journey date, or the error message of the enquiry, received after
+	 * sinceNanos (System.nanoTime()). null if no availability of the class arrived within the timeout or the
+	 * response does not contain the journey date.
+	 */
+	public synchronized String awaitAvailability(String trainNumber, String trainClass, LocalDate journeyDate,
+			long sinceNanos, Duration timeout) throws InterruptedException {
+		String key = key(trainNumber, trainClass);
+		long deadlineNanos = System.nanoTime() + timeout.toNanos();
+
+		while (true) {
+			Availability availability = availabilities.get(key);
+
+			if (availability != null && availability.receivedNanos - sinceNanos >= 0) {
+				return availability.errorMessage != null ? availability.errorMessage
+						: availability.statuses.get(journeyDate);
+			}
+
+			if (!await(deadlineNanos)) {
+				return null;
+			}
+		}
+	}
+
+	public static boolean isAvailable(String status) {
+		return status != null && status.startsWith("AVAILABLE");
+	}
+
+	private boolean await(long deadlineNanos) throws InterruptedException {
+		long remainingMillis = (deadlineNanos - System.nanoTime()) / 1000000;
+
+		if (remainingMillis <= 0) {
+			return false;
+		}
+
+		wait(remainingMillis);
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void onResponseReceived(Map<String, Object> event) {
+		Map<String, Object> response = (Map<String, Object>) event.get("response");
+		String url = response == null ? "" : String.valueOf(response.get("url"));
+
+		if (url.contains(TRAIN_LIST_PATH) || url.contains(AVAILABILITY_PATH)) {
+			pendingResponses.put(String.valueOf(event.get("requestId")), url);
+		}
+	}
+
+	private void onLoadingFinished(Map<String, Object> event) {
+		String requestId = String.valueOf(event.get("requestId"));
+		String url = pendingResponses.remove(requestId);
+
+		if (url == null) {
+			return;
+		}
+
+		long receivedNanos = System.nanoTime();
+
+		// the body is fetched with another devtools command, which must not block the event thread
+		CompletableFuture.runAsync(() -> {
+			try {
+				Map<String, Object> body = devTools.send(new Command<>("Network.getResponseBody",
+						Collections.singletonMap("requestId", requestId), input -> input.read(Map.class)));
+
+				if (Boolean.TRUE.equals(body.get("base64Encoded"))) {
+					return;
+				}
+
+				Map<String, Object> content = json.toType(String.valueOf(body.get("body")), Map.class);
+
+				if (url.contains(TRAIN_LIST_PATH)) {
+					onTrainList(content, receivedNanos);
+				} else {
+					onAvailability(url, content, receivedNanos);
+				}
+			} catch (RuntimeException e) {
+				BookingLog.error("Unable to read the response of: " + url, e);
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private void onTrainList(Map<String, Object> content, long receivedNanos) {
+		Map<String, List<String>> trainClasses = new LinkedHashMap<>();
+		Object trains = content.get("trainBtwnStnsList");
+
+		// without a list (e.g. an error response) the flow waits for the page instead
+		if (!(trains instanceof List)) {
+			BookingLog.info("Train list response without trains: " + content.get("errorMessage"));
+			return;
+		}
+
+		for (Map<String, Object> train : (List<Map<String, Object>>) trains) {
+			List<String> classes = new ArrayList<>();
+
+			if (train.get("avlClasses") instanceof List) {
+				for (Object trainClass : (List<Object>) train.get("avlClasses")) {
+					classes.add(String.valueOf(trainClass).toUpperCase());
+				}
+			}
+
+			trainClasses.put(String.valueOf(train.get("trainNumber")), classes);
+		}
+
+		synchronized (this) {
+			trainList = new TrainList(trainClasses, receivedNanos);
+			notifyAll();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void onAvailability(String url, Map<String, Object> content, long receivedNanos) {
+		Map<LocalDate, String> statuses = new HashMap<>();
+		Object days = content.get("avlDayList");
+
+		if (days instanceof List) {
+			for (Map<String, Object> day : (List<Map<String, Object>>) days) {
+				try {
+					statuses.put(LocalDate.parse(String.valueOf(day.get("availablityDate")),
+							availabilityDateFormatter), String.valueOf(day.get("availablityStatus")));
+				} catch (RuntimeException e) {
+					// days without a parsable date are left out
+				}
+			}
+		}
+
+		// error responses (e.g. the class is not open yet) carry the message instead of the days
+		String errorMessage = statuses.isEmpty() && content.get("errorMessage") != null
+				? String.valueOf(content.get("errorMessage")) : null;
+
+		// url: .../avlFarenquiry/{train}/{date}/{from}/{to}/{class}/{quota}/N, for responses without the train
+		String[] segments = url.substring(url.indexOf(AVAILABILITY_PATH) + AVAILABILITY_PATH.length()).split("[/?]");
+		String trainNumber = content.get("trainNo") != null ? String.valueOf(content.get("trainNo")) : segments[0];
+		String trainClass = content.get("enqClass") != null ? String.valueOf(content.get("enqClass"))
+				: segments.length > 4 ? segments[4] : "";
+
+		synchronized (this) {
+			availabilities.put(key(trainNumber, trainClass), new Availability(statuses, errorMessage, receivedNanos));
+			notifyAll();
+		}
+	}
+
+	private static String key(String trainNumber, String trainClass) {
+		return trainNumber + "/" + trainClass.toUpperCase();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Event<Map<String, Object>> event(String method) {
+		return new Event<>(method, input -> input.read(Map.class));
+	}
+
+	private static Command<Void> command(String method, Map<String, ?> parameters) {
+		return new Command<>(method, new HashMap<>(parameters));
+	}
+
+	// Classes of every train in the search result, by train number.
+	public static class TrainList {
+
+		private final Map<String, List<String>> trainClasses;
+		private final long receivedNanos;
+
+		private TrainList(Map<String, List<String>> trainClasses, long receivedNanos) {
+			this.trainClasses = trainClasses;
+			this.receivedNanos = receivedNanos;
+		}
+
+		public boolean hasTrain(String trainNumber) {
+			return trainClasses.containsKey(trainNumber);
+		}
+
+		public boolean hasClass(String trainNumber, String trainClass) {
+			return hasTrain(trainNumber) && trainClasses.get(trainNumber).contains(trainClass.toUpperCase());
+		}
+	}
+
+	private static class Availability {
+
+		private final Map<LocalDate, String> statuses;
+		private final String errorMessage;
+		private final long receivedNanos;
+
+		private Availability(Map<LocalDate, String> statuses, String errorMessage, long receivedNanos) {
+			this.statuses = statuses;
+			this.errorMessage = errorMessage;
+			this.receivedNanos = receivedNanos;
+		}
+	}
+}
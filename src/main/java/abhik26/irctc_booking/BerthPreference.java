@@ -0,0 +1,28 @@
+package abhik26.irctc_booking;
+
+public enum BerthPreference {
+
+	LOWER("LB"), MIDDLE("MB"), UPPER("UB"), SIDE_LOWER("SL"), SIDE_UPPER("SU"), WINDOW_SIDE("WS");
+
+	private final String code;
+
+	BerthPreference(String code) {
+		this.code = code;
+	}
+
+	// Option value of the berth preference dropdown
+	public String getCode() {
+		return code;
+	}
+
+	// null if the code is not a supported berth preference
+	public static BerthPreference fromCode(String code) {
+		for (BerthPreference berthPreference : values()) {
+			if (berthPreference.code.equalsIgnoreCase(code)) {
+				return berthPreference;
+			}
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,46 @@
+package abhik26.irctc_booking;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * JDK Flight Recorder events of the booking flow. They are recorded when the JVM is started with
+ * -XX:StartFlightRecording and cost a single enabled check otherwise.
+ */
+final class BookingEvents {
+
+	private BookingEvents() {
+	}
+
+	@Name("abhik26.irctc_booking.Phase")
+	@Label("Booking Phase")
+	@Description("A named phase of the booking flow")
+	@Category("IRCTC Booking")
+	@StackTrace(false)
+	static class PhaseEvent extends Event {
+
+		@Label("Phase")
+		String phase;
+	}
+
+	@Name("abhik26.irctc_booking.DriverCommand")
+	@Label("WebDriver Command")
+	@Description("A single WebDriver round-trip issued by the booking flow")
+	@Category("IRCTC Booking")
+	@StackTrace(false)
+	static class DriverCommandEvent extends Event {
+
+		@Label("Command")
+		String command;
+
+		@Label("Target")
+		String target;
+
+		@Label("Failed")
+		boolean failed;
+	}
+}
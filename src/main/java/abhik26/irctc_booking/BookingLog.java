@@ -0,0 +1,62 @@
+package abhik26.irctc_booking;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Asynchronous logger of the booking flow. Messages and file writes are queued and performed by a single
+ * daemon thread, so the booking thread never waits on console or disk I/O.
+ */
+public final class BookingLog {
+
+	private static final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+	static {
+		Thread writer = new Thread(BookingLog::drain, "booking-log");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private BookingLog() {
+	}
+
+	public static void info(String message) {
+		tasks.offer(() -> System.out.println(message));
+	}
+
+	public static void error(String message, Throwable throwable) {
+		tasks.offer(() -> {
+			StringWriter stackTrace = new StringWriter();
+			throwable.printStackTrace(new PrintWriter(stackTrace));
+			System.err.println(message);
+			System.err.print(stackTrace);
+		});
+	}
+
+	// Runs the task on the log thread after all previously queued messages.
+	public static void submit(Runnable task) {
+		tasks.offer(task);
+	}
+
+	// Waits until everything queued so far has been written, e.g. before the JVM exits.
+	public static void flush(long timeoutMillis) throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		tasks.offer(latch::countDown);
+		latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private static void drain() {
+		while (true) {
+			try {
+				tasks.take().run();
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package abhik26.irctc_booking;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Counters and latency histograms of the booking runs of this process, in the Prometheus text format. Recording
+ * only adds to LongAdder/DoubleAdder cells (the series of a phase or dialog is created on its first use), so it
+ * neither locks nor allocates on the booking thread. The metrics are served on
+ * http://127.0.0.1:<irctc.metrics.port>/metrics while the script runs if the system property is set, and written
+ * to <irctc.runs.dir>/irctc_booking.prom (e.g. for the node exporter textfile collector) when it ends.
+ */
+public class BookingMetrics {
+
+	private static final String SNAPSHOT_FILE_NAME = "irctc_booking.prom";
+
+	private static final double[] phaseBuckets = { 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60,
+			120 };
+	private static final double[] triggerBuckets = { 0.01, 0.025, 0.05, 0.1, 0.2, 0.3, 0.5, 0.75, 1, 1.5, 2, 3, 5,
+			10 };
+
+	// failures before the first step (opening the site) are counted under OPEN
+	private static final String OPEN = "OPEN";
+
+	private static final LongAdder attempts = new LongAdder();
+	private static final LongAdder completed = new LongAdder();
+	private static final LongAdder openFailures = new LongAdder();
+	private static final LongAdder[] failures = adders(BookingState.values().length);
+	private static final LongAdder[] retries = adders(BookingState.values().length);
+	private static final Map<String, LongAdder> dialogs = new ConcurrentHashMap<>();
+	private static final Map<String, Histogram> phases = new ConcurrentHashMap<>();
+	private static final Histogram triggerToBookNow = new Histogram(triggerBuckets);
+
+	private static HttpServer server = null;
+
+	private BookingMetrics() {
+	}
+
+	private static LongAdder[] adders(int count) {
+		LongAdder[] adders = new LongAdder[count];
+
+		for (int i = 0; i < count; i++) {
+			adders[i] = new LongAdder();
+		}
+
+		return adders;
+	}
+
+	public static void runStarted() {
+		attempts.increment();
+	}
+
+	public static void runCompleted() {
+		completed.increment();
+	}
+
+	// The step the run failed in, null if it failed before the first step.
+	public static void runFailed(BookingState step) {
+		(step == null ? openFailures : failures[step.ordinal()]).increment();
+	}
+
+	// A failed attempt of the step that is resumed from the last checkpoint.
+	public static void stepRetried(BookingState step) {
+		retries[step.ordinal()].increment();
+	}
+
+	public static void dialogHandled(String dialog) {
+		LongAdder count = dialogs.get(dialog);
+
+		if (count == null) {
+			count = dialogs.computeIfAbsent(dialog, key -> new LongAdder());
+		}
+
+		count.increment();
+	}
+
+	public static void phaseCompleted(String phase, long durationNanos) {
+		Histogram histogram = phases.get(phase);
+
+		if (histogram == null) {
+			histogram = phases.computeIfAbsent(phase, key -> new Histogram(phaseBuckets));
+		}
+
+		histogram.observe(durationNanos);
+	}
+
+	// From the tatkal trigger (or the train list, outside the tatkal window) to the click on Book Now.
+	public static void bookNowClicked(long sinceTriggerNanos) {
+		triggerToBookNow.observe(sinceTriggerNanos);
+	}
+
+	// The metrics in the Prometheus text exposition format (version 0.0.4).
+	public static String scrape() {
+		StringBuilder text = new StringBuilder(8192);
+
+		counter(text, "irctc_booking_attempts_total", "Booking runs started.");
+		text.append("irctc_booking_attempts_total ").append(attempts.sum()).append('\n');
+
+		counter(text, "irctc_booking_completed_total", "Booking runs that reached the payment.");
+		text.append("irctc_booking_completed_total ").append(completed.sum()).append('\n');
+
+		counter(text, "irctc_booking_failures_total", "Booking runs failed, by the step they failed in.");
+		sample(text, "irctc_booking_failures_total", "step", OPEN, openFailures.sum());
+
+		for (BookingState step : BookingState.values()) {
+			sample(text, "irctc_booking_failures_total", "step", step.toString(), failures[step.ordinal()].sum());
+		}
+
+		counter(text, "irctc_booking_step_retries_total", "Failed step attempts resumed from the last checkpoint.");
+
+		for (BookingState step : BookingState.values()) {
+			sample(text, "irctc_booking_step_retries_total", "step", step.toString(), retries[step.ordinal()].sum());
+		}
+
+		counter(text, "irctc_booking_dialogs_handled_total", "Dialogs dismissed by the dialog watchdog.");
+
+		for (Map.Entry<String, LongAdder> dialog : new TreeMap<>(dialogs).entrySet()) {
+			sample(text, "irctc_booking_dialogs_handled_total", "dialog", dialog.getKey(), dialog.getValue().sum());
+		}
+
+		help(text, "irctc_booking_phase_seconds", "histogram", "Duration of the phases of the booking flow.");
+
+		for (Map.Entry<String, Histogram> phase : new TreeMap<>(phases).entrySet()) {
+			phase.getValue().write(text, "irctc_booking_phase_seconds", "phase=\"" + escape(phase.getKey()) + "\",");
+		}
+
+		help(text, "irctc_booking_trigger_to_book_now_seconds", "histogram",
+				"From the tatkal trigger (or the loaded train list) to the click on Book Now.");
+		triggerToBookNow.write(text, "irctc_booking_trigger_to_book_now_seconds", "");
+
+		return text.toString();
+	}
+
+	private static void counter(StringBuilder text, String name, String help) {
+		help(text, name, "counter", help);
+	}
+
+	private static void help(StringBuilder text, String name, String type, String help) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void sample(StringBuilder text, String name, String label, String value, long count) {
+		text.append(name).append('{').append(label).append("=\"").append(escape(value)).append("\"} ").append(count)
+				.append('\n');
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/*
+	 * Serves the metrics on 127.0.0.1 if the irctc.metrics.port system property is set, until the script ends
+	 * (stopEndpoint).
+	 */
+	public static synchronized void startEndpoint() throws IOException {
+		Integer port = Integer.getInteger("irctc.metrics.port");
+
+		if (port == null || server != null) {
+			return;
+		}
+
+		ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-http");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		server.setExecutor(executor);
+		server.createContext("/metrics", BookingMetrics::handle);
+		server.start();
+		BookingLog.info("Metrics served on http://127.0.0.1:" + server.getAddress().getPort() + "/metrics");
+	}
+
+	private static void handle(HttpExchange exchange) throws IOException {
+		try {
+			byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	public static synchronized void stopEndpoint() {
+		if (server != null) {
+			server.stop(0);
+			((ExecutorService) server.getExecutor()).shutdownNow();
+			server = null;
+		}
+	}
+
+	/*
+	 * Writes the metrics to <irctc.runs.dir>/irctc_booking.prom on the log thread, through a temporary file so that
+	 * a collector never reads it half written.
+	 */
+	public static void writeSnapshot() {
+		String text = scrape();
+
+		BookingLog.submit(() -> {
+			Path directory = Paths.get(System.getProperty("irctc.runs.dir", "runs"));
+			Path file = directory.resolve(SNAPSHOT_FILE_NAME);
+
+			try {
+				Files.createDirectories(directory);
+				Path snapshotFile = directory.resolve(SNAPSHOT_FILE_NAME + ".tmp");
+				Files.write(snapshotFile, text.getBytes(StandardCharsets.UTF_8));
+				Files.move(snapshotFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				System.out.println("Metrics written to: " + file.toAbsolutePath());
+			} catch (Exception e) {
+				System.err.println("Unable to write metrics: " + e);
+			}
+		});
+	}
+
+	// Buckets are counted separately and added up when the histogram is written.
+	private static class Histogram {
+
+		private final double[] bounds;
+		private final LongAdder[] buckets;
+		private final DoubleAdder sum = new DoubleAdder();
+		private final LongAdder count = new LongAdder();
+
+		private Histogram(double[] bounds) {
+			this.bounds = bounds;
+			this.buckets = adders(bounds.length + 1);
+		}
+
+		private void observe(long durationNanos) {
+			double seconds = durationNanos / 1e9;
+			int bucket = 0;
+
+			while (bucket < bounds.length && seconds > bounds[bucket]) {
+				bucket++;
+			}
+
+			buckets[bucket].increment();
+			sum.add(seconds);
+			count.increment();
+		}
+
+		private void write(StringBuilder text, String name, String labels) {
+			long cumulative = 0;
+
+			for (int i = 0; i <= bounds.length; i++) {
+				cumulative += buckets[i].sum();
+				text.append(name).append("_bucket{").append(labels).append("le=\"")
+						.append(i < bounds.length ? Double.toString(bounds[i]) : "+Inf").append("\"} ")
+						.append(cumulative).append('\n');
+			}
+
+			String sampleLabels = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+			text.append(name).append("_sum").append(sampleLabels).append(' ').append(sum.sum()).append('\n');
+			text.append(name).append("_count").append(sampleLabels).append(' ').append(count.sum()).append('\n');
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package abhik26.irctc_booking;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+
+/*
+ * Everything the booking flow needs, formatted once from the booking request before the browser is started:
+ * the values to type, the locators of the train card and class cell of every choice, the availability cell and
+ * dropdown options, the passengers and the tatkal timing. From the tatkal trigger on, the flow only sends
+ * driver commands with values taken from the plan, without any property lookup, parsing or string formatting.
+ */
+public final class BookingPlan {
+
+	private static final DateTimeFormatter journeyDateFormatter = DateTimeFormatter.ofPattern("dd/MM/uuuu");
+	private static final DateTimeFormatter seatLinkDateFormatter = DateTimeFormatter.ofPattern("EEE, dd MMM");
+
+	private final String username;
+	private final String password;
+	private final String fromStation;
+	private final String toStation;
+	private final By fromStationOption;
+	private final By toStationOption;
+	private final String journeyDate;
+	private final LocalDate journeyLocalDate;
+	private final By journeyQuotaOption;
+	private final boolean tatkal;
+	private final LocalTime tatkalLoginThreshold;
+	private final LocalTime tatkalStartTime;
+	private final long tatkalSafetyMarginMillis;
+	private final List<PlannedChoice> choices;
+	private final String seatLinkDate;
+	private final By seatAvailability;
+	private final List<PlannedPassenger> passengers;
+	private final List<Map<String, Object>> passengerFormArgument;
+	private final String foodPreference;
+	private final By foodPreferenceOption;
+	private final String upiId;
+	private final boolean captchaTextExtractionEnabled;
+	private final boolean passengerBatchFillEnabled;
+
+	private BookingPlan(BookingRequest request) {
+		username = request.getUsername();
+		password = request.getPassword();
+		fromStation = request.getFromStation();
+		toStation = request.getToStation();
+		fromStationOption = stationOption("pr_id_1_list", fromStation);
+		toStationOption = stationOption("pr_id_2_list", toStation);
+		journeyDate = request.getJourneyDate().format(journeyDateFormatter);
+		journeyLocalDate = request.getJourneyDate();
+		journeyQuotaOption = By.cssSelector(String.format("li[aria-label='%s']", request.getJourneyQuota()));
+		tatkal = request.getJourneyQuota() == JourneyQuota.TATKAL;
+
+		// tatkal booking opens at 10:00 AM for AC classes and 11:00 AM for non AC classes, login a minute before
+		tatkalStartTime = LocalTime.of(request.getTrainClass().isAc() ? 10 : 11, 0);
+		tatkalLoginThreshold = tatkalStartTime.minusMinutes(1);
+		tatkalSafetyMarginMillis = request.getTatkalSafetyMarginMillis();
+
+		List<PlannedChoice> plannedChoices = new ArrayList<>();
+
+		for (TrainChoice choice : request.getChoices()) {
+			plannedChoices.add(new PlannedChoice(choice.getTrainNumber(), choice.getTrainClass().getCode()));
+		}
+
+		choices = Collections.unmodifiableList(plannedChoices);
+		seatLinkDate = request.getJourneyDate().format(seatLinkDateFormatter);
+		seatAvailability = By.xpath(String.format(".//td//strong[contains(text(), '%s')]/ancestor::td",
+				seatLinkDate));
+
+		List<PlannedPassenger> plannedPassengers = new ArrayList<>();
+
+		for (Passenger passenger : request.getPassengers()) {
+			plannedPassengers.add(new PlannedPassenger(passenger.getName(), String.valueOf(passenger.getAge()),
+					passenger.getGender().getCode(), passenger.getBerthPreference() == null ? null
+							: passenger.getBerthPreference().getCode()));
+		}
+
+		passengers = Collections.unmodifiableList(plannedPassengers);
+		passengerFormArgument = PassengerFormFiller.scriptArgument(passengers);
+		foodPreference = request.getFoodPreference().getCode();
+		foodPreferenceOption = optionLocator(foodPreference);
+		upiId = request.getUpiId();
+		captchaTextExtractionEnabled = request.isCaptchaTextExtractionEnabled();
+		passengerBatchFillEnabled = request.isPassengerBatchFillEnabled();
+	}
+
+	public static BookingPlan compile(BookingRequest request) {
+		return new BookingPlan(request);
+	}
+
+	static By optionLocator(String value) {
+		return By.cssSelector(String.format("option[value='%s']", value));
+	}
+
+	// the suggestion ends with " - <code>", optionally followed by the city, e.g. "KOLKATA - KOAA (KOLKATA)"
+	private static By stationOption(String listId, String stationCode) {
+		return By.xpath(String.format("//*[@id='%s']//li[contains(concat(normalize-space(.), ' '), ' - %s ')]",
+				listId, stationCode));
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public String getFromStation() {
+		return fromStation;
+	}
+
+	public String getToStation() {
+		return toStation;
+	}
+
+	// Suggestion of the from station in the autocomplete list, e.g. "HOWRAH JN - HWH"
+	public By getFromStationOption() {
+		return fromStationOption;
+	}
+
+	public By getToStationOption() {
+		return toStationOption;
+	}
+
+	public String getJourneyDate() {
+		return journeyDate;
+	}
+
+	public LocalDate getJourneyLocalDate() {
+		return journeyLocalDate;
+	}
+
+	public By getJourneyQuotaOption() {
+		return journeyQuotaOption;
+	}
+
+	public boolean isTatkal() {
+		return tatkal;
+	}
+
+	public LocalTime getTatkalLoginThreshold() {
+		return tatkalLoginThreshold;
+	}
+
+	public LocalTime getTatkalStartTime() {
+		return tatkalStartTime;
+	}
+
+	public long getTatkalSafetyMarginMillis() {
+		return tatkalSafetyMarginMillis;
+	}
+
+	// Requested train and class first, followed by the fallback choices
+	public List<PlannedChoice> getChoices() {
+		return choices;
+	}
+
+	// Journey date as shown in the availability cell, e.g. "Thu, 22 Oct"
+	public String getSeatLinkDate() {
+		return seatLinkDate;
+	}
+
+	// Availability cell of the journey date, relative to the train card
+	public By getSeatAvailability() {
+		return seatAvailability;
+	}
+
+	public List<PlannedPassenger> getPassengers() {
+		return passengers;
+	}
+
+	// Passengers in the form expected by PassengerFormFiller
+	List<Map<String, Object>> getPassengerFormArgument() {
+		return passengerFormArgument;
+	}
+
+	public String getFoodPreference() {
+		return foodPreference;
+	}
+
+	public By getFoodPreferenceOption() {
+		return foodPreferenceOption;
+	}
+
+	public String getUpiId() {
+		return upiId;
+	}
+
+	public boolean isCaptchaTextExtractionEnabled() {
+		return captchaTextExtractionEnabled;
+	}
+
+	public boolean isPassengerBatchFillEnabled() {
+		return passengerBatchFillEnabled;
+	}
+
+	public static final class PlannedChoice {
+
+		private final String trainNumber;
+		private final String trainClassCode;
+		private final By train;
+		private final By trainClass;
+
+		PlannedChoice(String trainNumber, String trainClassCode) {
+			this.trainNumber = trainNumber;
+			this.trainClassCode = trainClassCode;
+			this.train = By.xpath(String.format(
+					"//strong[contains(text(), '(%s)')]/ancestor::div[contains(@class, 'border-all')]", trainNumber));
+			this.trainClass = By.xpath(String.format(".//td//*[contains(text(), '(%s)')]/ancestor::td",
+					trainClassCode));
+		}
+
+		public String getTrainNumber() {
+			return trainNumber;
+		}
+
+		public String getTrainClassCode() {
+			return trainClassCode;
+		}
+
+		// Train card in the train list
+		public By getTrain() {
+			return train;
+		}
+
+		// Class cell, relative to the train card
+		public By getTrainClass() {
+			return trainClass;
+		}
+
+		@Override
+		public String toString() {
+			return trainNumber + " " + trainClassCode;
+		}
+	}
+
+	public static final class PlannedPassenger {
+
+		private final String name;
+		private final String age;
+		private final String gender;
+		private final String berth;
+		private final By genderOption;
+		private final By berthOption;
+
+		// berth can be null for no preference
+		PlannedPassenger(String name, String age, String gender, String berth) {
+			this.name = name;
+			this.age = age;
+			this.gender = gender;
+			this.berth = berth;
+			this.genderOption = optionLocator(gender);
+			this.berthOption = berth == null ? null : optionLocator(berth);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getAge() {
+			return age;
+		}
+
+		public String getGender() {
+			return gender;
+		}
+
+		public String getBerth() {
+			return berth;
+		}
+
+		public By getGenderOption() {
+			return genderOption;
+		}
+
+		public By getBerthOption() {
+			return berthOption;
+		}
+	}
+}
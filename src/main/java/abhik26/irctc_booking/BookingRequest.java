@@ -0,0 +1,378 @@
+package abhik26.irctc_booking;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/*
+ * Validated booking details, parsed in a single pass from the booking properties. Instances are immutable, so
+ * several requests can be booked one after the other (e.g. by the benchmark) without any shared state.
+ */
+public final class BookingRequest {
+
+	private static final ZoneId indiaZoneId = ZoneId.of("Asia/Kolkata");
+	private static final DateTimeFormatter journeyDateFormattter = DateTimeFormatter.ofPattern("dd/MM/uuuu")
+			.withResolverStyle(ResolverStyle.STRICT);
+	private static final String VALID_UPI_ID_REGEX = "^(\\w+[.\\-])*\\w+@(\\w+[.\\-])*\\w+$";
+
+	// Optional properties
+	private static final String TATKAL_SAFETY_MARGIN_PROPERTY = "tatkal_safety_margin_millis";
+	private static final long DEFAULT_TATKAL_SAFETY_MARGIN_MILLIS = 1000;
+	private static final String PASSENGER_BATCH_FILL_PROPERTY = "passenger_batch_fill_enabled";
+	private static final String FALLBACK_CHOICES_PROPERTY = "fallback_choices";
+
+	private static enum BookingProperty {
+		USERNAME("irctc_username"), PASSWORD("irctc_password"), FROM_STATION("from_station_code"),
+		TO_STATION("to_station_code"), JOURNEY_DATE("journey_date"), JOURNEY_QUOTA("journey_quota"),
+		TRAIN_NUMBER("train_number"), TRAIN_CLASS("train_class"), PASSENGER_COUNT("passenger_count"),
+		UPI_ID("upi_id"), CAPTCHA_TEXT_EXTRACTION_ENABLED("captcha_text_extraction_enabled"),
+		PASSENGER_FOOD_PREFERENCE("passenger_food_preference");
+
+		private final String name;
+
+		BookingProperty(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return this.name;
+		}
+	}
+
+	private final String username;
+	private final String password;
+	private final String fromStation;
+	private final String toStation;
+	private final LocalDate journeyDate;
+	private final JourneyQuota journeyQuota;
+	private final String trainNumber;
+	private final TrainClass trainClass;
+	private final List<TrainChoice> choices;
+	private final List<Passenger> passengers;
+	private final String upiId;
+	private final boolean captchaTextExtractionEnabled;
+	private final FoodPreference foodPreference;
+	private final long tatkalSafetyMarginMillis;
+	private final boolean passengerBatchFillEnabled;
+
+	// indiaLocalDate is the current date in India, which the journey date is validated against
+	BookingRequest(Properties properties, LocalDate indiaLocalDate) {
+		final String valueNotProvidedMessage = "Value not provided for property: ";
+		final String invalidValueMessage = "Invalid value for property: ";
+
+		for (BookingProperty bookingProperty : BookingProperty.values()) {
+			String propertyValue = properties.getProperty(bookingProperty.toString());
+
+			if (propertyValue == null || propertyValue.trim().isEmpty()) {
+				throw new RuntimeException(valueNotProvidedMessage + bookingProperty);
+			}
+		}
+
+		username = value(properties, BookingProperty.USERNAME);
+		password = value(properties, BookingProperty.PASSWORD);
+		fromStation = station(properties, BookingProperty.FROM_STATION);
+		toStation = station(properties, BookingProperty.TO_STATION);
+
+		try {
+			journeyDate = LocalDate.parse(value(properties, BookingProperty.JOURNEY_DATE), journeyDateFormattter);
+		} catch (Exception e) {
+			throw new RuntimeException(
+					invalidValueMessage + BookingProperty.JOURNEY_DATE + ". It should be in the proper format.");
+		}
+
+		if (journeyDate.isBefore(indiaLocalDate)) {
+			throw new RuntimeException(invalidValueMessage + BookingProperty.JOURNEY_DATE
+					+ ". It should not be in the past date.");
+		}
+
+		journeyQuota = JourneyQuota.fromValue(value(properties, BookingProperty.JOURNEY_QUOTA));
+
+		if (journeyQuota == null) {
+			throw new RuntimeException(invalidValueMessage + BookingProperty.JOURNEY_QUOTA);
+		}
+
+		// tatkal tickets can only be booked for the next day
+		if (journeyQuota == JourneyQuota.TATKAL && !journeyDate.equals(indiaLocalDate.plus(1, ChronoUnit.DAYS))) {
+			throw new RuntimeException(invalidValueMessage + BookingProperty.JOURNEY_QUOTA);
+		}
+
+		trainNumber = value(properties, BookingProperty.TRAIN_NUMBER);
+
+		try {
+			Integer.parseInt(trainNumber);
+		} catch (NumberFormatException e) {
+			throw new RuntimeException(invalidValueMessage + BookingProperty.TRAIN_NUMBER);
+		}
+
+		trainClass = TrainClass.fromCode(value(properties, BookingProperty.TRAIN_CLASS));
+
+		if (trainClass == null) {
+			throw new RuntimeException(invalidValueMessage + BookingProperty.TRAIN_CLASS);
+		}
+
+		if (journeyQuota == JourneyQuota.TATKAL && trainClass == TrainClass.AC_FIRST_CLASS) {
+			throw new RuntimeException("'1A' train class not applicable for 'TATKAL' journey quota.");
+		}
+
+		int passengerCount;
+
+		try {
+			passengerCount = Integer.parseInt(value(properties, BookingProperty.PASSENGER_COUNT));
+		} catch (NumberFormatException e) {
+			throw new RuntimeException(invalidValueMessage + BookingProperty.PASSENGER_COUNT);
+		}
+
+		if (passengerCount < 1) {
+			throw new RuntimeException(invalidValueMessage + BookingProperty.PASSENGER_COUNT);
+		}
+
+		if (journeyQuota == JourneyQuota.TATKAL && passengerCount > 4) {
+			throw new RuntimeException("Maximum 4 passengers are allowed in 'TATKAL' journey quota.");
+		} else if (passengerCount > 6) {
+			throw new RuntimeException("Maximum 6 passengers are allowed in 'GENERAL' journey quota.");
+		}
+
+		upiId = value(properties, BookingProperty.UPI_ID);
+
+		if (!upiId.matches(VALID_UPI_ID_REGEX)) {
+			throw new RuntimeException(invalidValueMessage + BookingProperty.UPI_ID);
+		}
+
+		captchaTextExtractionEnabled = booleanValue(properties,
+				BookingProperty.CAPTCHA_TEXT_EXTRACTION_ENABLED.toString(), null);
+		foodPreference = FoodPreference.fromCode(value(properties, BookingProperty.PASSENGER_FOOD_PREFERENCE));
+
+		if (foodPreference == null) {
+			throw new RuntimeException(invalidValueMessage + BookingProperty.PASSENGER_FOOD_PREFERENCE);
+		}
+
+		List<Passenger> passengerList = new ArrayList<>();
+
+		for (int i = 1; i <= passengerCount; i++) {
+			passengerList.add(passenger(properties, "passenger" + i));
+		}
+
+		passengers = Collections.unmodifiableList(passengerList);
+
+		String tatkalSafetyMargin = properties.getProperty(TATKAL_SAFETY_MARGIN_PROPERTY);
+		long safetyMarginMillis = DEFAULT_TATKAL_SAFETY_MARGIN_MILLIS;
+
+		if (tatkalSafetyMargin != null && !tatkalSafetyMargin.trim().isEmpty()) {
+			try {
+				safetyMarginMillis = Long.parseLong(tatkalSafetyMargin.trim());
+			} catch (NumberFormatException e) {
+				throw new RuntimeException(invalidValueMessage + TATKAL_SAFETY_MARGIN_PROPERTY);
+			}
+
+			if (safetyMarginMillis < 0 || safetyMarginMillis > 10000) {
+				throw new RuntimeException(invalidValueMessage + TATKAL_SAFETY_MARGIN_PROPERTY
+						+ ". It should be between 0 and 10000.");
+			}
+		}
+
+		tatkalSafetyMarginMillis = safetyMarginMillis;
+		passengerBatchFillEnabled = booleanValue(properties, PASSENGER_BATCH_FILL_PROPERTY, true);
+
+		List<TrainChoice> choiceList = new ArrayList<>();
+		choiceList.add(new TrainChoice(trainNumber, trainClass));
+		String fallbackChoices = properties.getProperty(FALLBACK_CHOICES_PROPERTY);
+
+		if (fallbackChoices != null && !fallbackChoices.trim().isEmpty()) {
+			for (String fallbackChoice : fallbackChoices.trim().split("\\s*,\\s*")) {
+				choiceList.add(fallbackChoice(fallbackChoice, journeyQuota, trainClass));
+			}
+		}
+
+		choices = Collections.unmodifiableList(choiceList);
+	}
+
+	// Validates the properties and throws an exception with the cause of the first failure.
+	public static BookingRequest fromProperties(Properties properties) {
+		return new BookingRequest(properties, LocalDate.now(indiaZoneId));
+	}
+
+	private static String value(Properties properties, BookingProperty bookingProperty) {
+		return properties.getProperty(bookingProperty.toString()).trim();
+	}
+
+	// 'true' or 'false', defaultValue if the property is optional (not null) and not provided
+	private static boolean booleanValue(Properties properties, String property, Boolean defaultValue) {
+		String value = properties.getProperty(property);
+
+		if ((value == null || value.trim().isEmpty()) && defaultValue != null) {
+			return defaultValue;
+		}
+
+		if (value == null || (!value.trim().equalsIgnoreCase("true") && !value.trim().equalsIgnoreCase("false"))) {
+			throw new RuntimeException("Invalid value for property: " + property);
+		}
+
+		return Boolean.parseBoolean(value.trim());
+	}
+
+	// <train number>:<train class>, e.g. 12301:3A
+	private static TrainChoice fallbackChoice(String value, JourneyQuota journeyQuota, TrainClass trainClass) {
+		final String invalidValueMessage = "Invalid value for property: " + FALLBACK_CHOICES_PROPERTY;
+		String[] choice = value.split("\\s*:\\s*");
+
+		if (choice.length != 2) {
+			throw new RuntimeException(invalidValueMessage + ". Choices should be <train number>:<train class>.");
+		}
+
+		try {
+			Integer.parseInt(choice[0]);
+		} catch (NumberFormatException e) {
+			throw new RuntimeException(invalidValueMessage + ". Invalid train number: " + choice[0]);
+		}
+
+		TrainClass choiceClass = TrainClass.fromCode(choice[1]);
+
+		if (choiceClass == null) {
+			throw new RuntimeException(invalidValueMessage + ". Invalid train class: " + choice[1]);
+		}
+
+		if (journeyQuota == JourneyQuota.TATKAL && choiceClass == TrainClass.AC_FIRST_CLASS) {
+			throw new RuntimeException("'1A' train class not applicable for 'TATKAL' journey quota.");
+		}
+
+		// every choice is clicked after the same tatkal start, 10:00 AM for AC and 11:00 AM for non AC classes
+		if (journeyQuota == JourneyQuota.TATKAL && choiceClass.isAc() != trainClass.isAc()) {
+			throw new RuntimeException(invalidValueMessage + ". Classes of 'TATKAL' choices should all be AC or all"
+					+ " non AC, like train_class.");
+		}
+
+		return new TrainChoice(choice[0], choiceClass);
+	}
+
+	// Station code, upper case as in the " - <code>" suffix of the site's suggestions.
+	private static String station(Properties properties, BookingProperty property) {
+		return value(properties, property).toUpperCase(Locale.ROOT);
+	}
+
+	private static Passenger passenger(Properties properties, String passengerKey) {
+		String passengerDetails = properties.getProperty(passengerKey);
+
+		if (passengerDetails == null || passengerDetails.trim().isEmpty()) {
+			throw new RuntimeException("Passenger details not provided for: " + passengerKey);
+		}
+
+		String[] detailsArray = passengerDetails.trim().split("\\s*\\|\\s*");
+
+		if (detailsArray.length < 3) {
+			throw new RuntimeException(
+					"Mandatory fields (<full name> | <age> | <gender>) not provided for: " + passengerKey);
+		}
+
+		if (detailsArray[0].isEmpty()) {
+			throw new RuntimeException("Passenger name not provided for: " + passengerKey);
+		}
+
+		if (detailsArray[1].isEmpty()) {
+			throw new RuntimeException("Passenger age not provided for: " + passengerKey);
+		}
+
+		String invalidAgeMessage = "Invalid age, it should be between 1 and 125 for: " + passengerKey;
+		int age;
+
+		try {
+			age = Integer.parseInt(detailsArray[1]);
+		} catch (NumberFormatException e) {
+			throw new RuntimeException(invalidAgeMessage);
+		}
+
+		if (age < 1 || age > 125) {
+			throw new RuntimeException(invalidAgeMessage);
+		}
+
+		if (detailsArray[2].isEmpty()) {
+			throw new RuntimeException("Passenger gender not provided for: " + passengerKey);
+		}
+
+		Gender gender = Gender.fromCode(detailsArray[2]);
+
+		if (gender == null) {
+			throw new RuntimeException("Invalid gender for: " + passengerKey);
+		}
+
+		BerthPreference berthPreference = null;
+
+		if (detailsArray.length >= 4 && !detailsArray[3].isEmpty()) {
+			berthPreference = BerthPreference.fromCode(detailsArray[3]);
+
+			if (berthPreference == null) {
+				throw new RuntimeException("Invalid berth preference for: " + passengerKey);
+			}
+		}
+
+		return new Passenger(detailsArray[0], age, gender, berthPreference);
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public String getFromStation() {
+		return fromStation;
+	}
+
+	public String getToStation() {
+		return toStation;
+	}
+
+	public LocalDate getJourneyDate() {
+		return journeyDate;
+	}
+
+	public JourneyQuota getJourneyQuota() {
+		return journeyQuota;
+	}
+
+	public String getTrainNumber() {
+		return trainNumber;
+	}
+
+	public TrainClass getTrainClass() {
+		return trainClass;
+	}
+
+	// Requested train and class first, followed by the fallback choices in their order
+	public List<TrainChoice> getChoices() {
+		return choices;
+	}
+
+	public List<Passenger> getPassengers() {
+		return passengers;
+	}
+
+	public String getUpiId() {
+		return upiId;
+	}
+
+	public boolean isCaptchaTextExtractionEnabled() {
+		return captchaTextExtractionEnabled;
+	}
+
+	public FoodPreference getFoodPreference() {
+		return foodPreference;
+	}
+
+	public long getTatkalSafetyMarginMillis() {
+		return tatkalSafetyMarginMillis;
+	}
+
+	public boolean isPassengerBatchFillEnabled() {
+		return passengerBatchFillEnabled;
+	}
+}
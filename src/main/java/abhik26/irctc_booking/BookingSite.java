@@ -0,0 +1,35 @@
+package abhik26.irctc_booking;
+
+/*
+ * The booking site as the booking steps see it, one method per step of the flow. The steps are run in order by
+ * IRCTCBooking, which resumes a failed step from the checkpoint the site reports, so the same state machine
+ * drives a browser (SeleniumBookingSite) and the in-memory model of the site (SimulatedBookingSite). A step
+ * fails with a WebDriverException when it may succeed if run again, with any other exception otherwise. Every
+ * step can be run again on the page it starts from.
+ */
+public interface BookingSite {
+
+	// Opens the booking page.
+	void open() throws Exception;
+
+	// The last checkpoint shown by the site, or null to start over with the sign in.
+	BookingState detectCheckpoint();
+
+	void signIn() throws Exception;
+
+	void searchTrains() throws Exception;
+
+	void selectClass() throws Exception;
+
+	void fillPassengers() throws Exception;
+
+	void reviewBooking() throws Exception;
+
+	void pay() throws Exception;
+
+	/*
+	 * Called once after the flow has stopped, with the failure that stopped it (null if the payment was reached).
+	 * keepOpen is true once the passenger details have been filled, for a manual takeover.
+	 */
+	void finish(Exception failure, boolean keepOpen) throws Exception;
+}
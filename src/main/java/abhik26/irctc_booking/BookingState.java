@@ -0,0 +1,34 @@
+package abhik26.irctc_booking;
+
+import org.openqa.selenium.By;
+
+/*
+ * Checkpoints of the booking flow, in order. Each checkpoint is recognised on the page by an element that is
+ * only shown once it has been reached, which is how the flow finds where to resume after a failed step. The
+ * payment is the last step and leaves the site, so it is not looked for on the page.
+ */
+public enum BookingState {
+
+	SIGNED_IN(By.xpath("//a[contains(@class, 'loginText')][contains(., 'LOGOUT')]")),
+	SEARCHED(By.xpath("//div[contains(@class, 'border-all')][.//button[contains(text(), 'Book Now')]]")),
+	CLASS_SELECTED(By.tagName("app-passenger")),
+	PASSENGERS_FILLED(By.xpath("//button[@class='btnDefault train_Search'][contains(text(), 'Continue')]")),
+	REVIEWED(By.xpath("//span[contains(text(), 'IRCTC iPay')] | //input[@id='vpaCheck']")),
+	PAYMENT(null);
+
+	private final By reachedWhen;
+
+	BookingState(By reachedWhen) {
+		this.reachedWhen = reachedWhen;
+	}
+
+	// Element shown once the state has been reached, null for the payment
+	public By getReachedWhen() {
+		return reachedWhen;
+	}
+
+	// null for the payment
+	public BookingState next() {
+		return this == PAYMENT ? null : values()[ordinal() + 1];
+	}
+}
@@ -2,5 +2,5 @@ package abhik26.irctc_booking;
 
 public enum BrowserName {
 
-	CHROME, EDGE
+	CHROME, EDGE, FIREFOX
 }
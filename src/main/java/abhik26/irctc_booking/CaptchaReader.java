@@ -0,0 +1,77 @@
+package abhik26.irctc_booking;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import net.sourceforge.tess4j.ITesseract;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+
+/*
+ * Reads the text of the captcha images with Tesseract. The tess4j classes, the native library and the trained
+ * data (eng.traineddata on the classpath) are only loaded if captcha text extraction is enabled, once per run and
+ * in the background (load), so that neither the startup nor the first captcha waits for them.
+ */
+public class CaptchaReader {
+
+	private static final String TRAINED_DATA = "eng.traineddata";
+
+	private final ITesseract tesseract;
+
+	private CaptchaReader(ITesseract tesseract) {
+		this.tesseract = tesseract;
+	}
+
+	public static CompletableFuture<CaptchaReader> load() {
+		return CompletableFuture.supplyAsync(() -> {
+			long startNanos = System.nanoTime();
+
+			try {
+				Tesseract tesseract = new Tesseract();
+				tesseract.setDatapath(dataPath());
+
+				// a blank image loads the native library and the trained data
+				tesseract.doOCR(new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_GRAY));
+				BookingLog.info(String.format("Captcha reader loaded in %.1f ms", (System.nanoTime() - startNanos)
+						/ 1e6));
+				return new CaptchaReader(tesseract);
+			} catch (Exception | LinkageError e) {
+				// e.g. the native Tesseract library is not installed
+				throw new RuntimeException("Unable to load the captcha reader: " + e, e);
+			}
+		});
+	}
+
+	// The folder of the trained data, copied out of the jar if it is packaged in it.
+	private static String dataPath() throws Exception {
+		URL trainedData = ClassLoader.getSystemResource(TRAINED_DATA);
+
+		if (trainedData == null) {
+			throw new RuntimeException(TRAINED_DATA + " is not in the classpath.");
+		}
+
+		if ("file".equals(trainedData.getProtocol())) {
+			return new File(trainedData.toURI()).getParent();
+		}
+
+		Path directory = Files.createTempDirectory("tessdata");
+
+		try (InputStream is = trainedData.openStream()) {
+			Files.copy(is, directory.resolve(TRAINED_DATA));
+		}
+
+		directory.resolve(TRAINED_DATA).toFile().deleteOnExit();
+		directory.toFile().deleteOnExit();
+		return directory.toString();
+	}
+
+	// The text of the image, without white space.
+	public String read(BufferedImage image) throws TesseractException {
+		return tesseract.doOCR(image).replaceAll("\\s*", "");
+	}
+}
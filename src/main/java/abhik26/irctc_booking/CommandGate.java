@@ -0,0 +1,104 @@
+package abhik26.irctc_booking;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Keeps the commands the background threads (dialog watchdog, diagnostics recorder) send on the browser session
+ * apart from the commands of the flow, as the driver runs the commands of a session one at a time and any
+ * overlap delays one of them. The flow never waits here: its commands are counted while they run (by
+ * DriverCommandListener), and a background command is only sent while none of them is running. A flow command
+ * sent while a background command runs still waits for it in the driver; such commands and how long the
+ * background command had left are counted for the run summary (blockedCommands, blockedMillis). The availability
+ * monitor only listens on the DevTools connection, which does not go through the command queue of the driver.
+ */
+public class CommandGate {
+
+	// guarded by this
+	private int flowCommands = 0;
+	private boolean backgroundRunning = false;
+	private long blockedSinceNanos = 0;
+	private int backgroundCommands = 0;
+	private int deferredCommands = 0;
+	private int blockedCommands = 0;
+	private long blockedNanos = 0;
+
+	synchronized void flowCommandStarted() {
+		flowCommands++;
+
+		if (backgroundRunning) {
+			blockedCommands++;
+
+			if (blockedSinceNanos == 0) {
+				blockedSinceNanos = System.nanoTime();
+			}
+		}
+	}
+
+	synchronized void flowCommandFinished() {
+		flowCommands = Math.max(0, flowCommands - 1);
+
+		if (flowCommands == 0) {
+			notifyAll();
+		}
+	}
+
+	// Starts a background command if no flow command is running, else returns false and nothing is to be sent.
+	public synchronized boolean tryBackground() {
+		if (flowCommands > 0 || backgroundRunning) {
+			deferredCommands++;
+			return false;
+		}
+
+		backgroundRunning = true;
+		backgroundCommands++;
+		return true;
+	}
+
+	// Waits up to the timeout for the flow commands to finish, then starts a background command as tryBackground.
+	public synchronized boolean awaitBackground(Duration timeout) throws InterruptedException {
+		long deadlineNanos = System.nanoTime() + timeout.toNanos();
+
+		while (flowCommands > 0 || backgroundRunning) {
+			long remainingNanos = deadlineNanos - System.nanoTime();
+
+			if (remainingNanos <= 0) {
+				deferredCommands++;
+				return false;
+			}
+
+			wait(remainingNanos / 1_000_000, (int) (remainingNanos % 1_000_000));
+		}
+
+		backgroundRunning = true;
+		backgroundCommands++;
+		return true;
+	}
+
+	// Ends the background command started by tryBackground or awaitBackground.
+	public synchronized void endBackground() {
+		backgroundRunning = false;
+
+		if (blockedSinceNanos != 0) {
+			blockedNanos += System.nanoTime() - blockedSinceNanos;
+			blockedSinceNanos = 0;
+		}
+
+		notifyAll();
+	}
+
+	/*
+	 * Background commands sent and deferred because flow commands were running, and the flow commands sent while a
+	 * background command ran with the time they waited for it, for the run summary.
+	 */
+	public synchronized Map<String, Object> getSummary() {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("backgroundCommands", backgroundCommands);
+		summary.put("deferredCommands", deferredCommands);
+		summary.put("blockedCommands", blockedCommands);
+		summary.put("blockedMillis", blockedNanos / 1e6);
+		return Collections.unmodifiableMap(summary);
+	}
+}
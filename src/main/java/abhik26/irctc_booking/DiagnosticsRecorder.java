@@ -0,0 +1,431 @@
+package abhik26.irctc_booking;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.json.Json;
+
+/*
+ * Keeps what the page looked like after each of the last steps of the flow (page snippet, console errors,
+ * screenshot in memory and the driver commands of the step), so that a failed run can be looked into. The booking
+ * thread only hands the step over, the page is read by a background thread, on the undecorated driver so that its
+ * commands are not timed as phases. A step captured while another one is still waiting to be read replaces it,
+ * so the capture never queues up behind the flow. The browser runs the commands of a session one at a time, so the
+ * page is only read while no flow command runs (CommandGate), and the flow commands sent while it is read wait for
+ * it: the time they overlapped a capture is in the summary (blockedMillis), and the flow takes no step captures
+ * between the tatkal trigger and the payment page. Nothing is
+ * written unless the run fails, then the kept steps are zipped to <irctc.runs.dir>/failure-<timestamp>.zip on the
+ * log thread.
+ *
+ * System properties: irctc.diagnostics (default true), irctc.diagnostics.steps (steps kept, default 8) and
+ * irctc.diagnostics.screenshots (default true).
+ */
+public class DiagnosticsRecorder {
+
+	private static final DateTimeFormatter archiveFileDateTimeFormatter = DateTimeFormatter
+			.ofPattern("uuuuMMdd-HHmmss").withZone(ZoneId.systemDefault());
+
+	// the page is only read while no flow command runs, a step is kept unread after waiting this long for it
+	private static final Duration FLOW_COMMAND_WAIT = Duration.ofSeconds(5);
+
+	// longer pages are cut, the elements of the flow are usually well within it
+	private static final int MAX_HTML_CHARS = 200_000;
+
+	private static final String SNAPSHOT_SCRIPT = ""
+			+ "var maxHtml = arguments[0], state = window.__irctcDiagnostics;"
+			+ "if (!state) {"
+			+ "  state = window.__irctcDiagnostics = { console: [] };"
+			+ "  var keep = function (level, text) {"
+			+ "    if (state.console.length < 200) { state.console.push({ level: level, text: String(text),"
+			+ "      at: Date.now() }); }"
+			+ "  };"
+			+ "  ['error', 'warn'].forEach(function (level) {"
+			+ "    var log = console[level];"
+			+ "    console[level] = function () {"
+			+ "      keep(level, Array.prototype.slice.call(arguments).join(' '));"
+			+ "      return log.apply(console, arguments);"
+			+ "    };"
+			+ "  });"
+			+ "  window.addEventListener('error', function (e) { keep('uncaught', e.message); });"
+			+ "  window.addEventListener('unhandledrejection', function (e) { keep('rejection', e.reason); });"
+			+ "}"
+			+ "var html = document.documentElement ? document.documentElement.outerHTML : '';"
+			+ "var logs = state.console;"
+			+ "state.console = [];"
+			+ "return { url: location.href, title: document.title, htmlLength: html.length,"
+			+ "  html: html.substring(0, maxHtml), console: logs };";
+
+	// queued to end the capture thread
+	private static final Runnable STOP = () -> {
+	};
+
+	private final WebDriver driver;
+	private final CommandGate commandGate;
+	private final PhaseTimer phaseTimer;
+	private final int maxSteps;
+	private final boolean screenshots;
+	private final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+	private final Thread thread;
+
+	// guarded by this
+	private final ArrayDeque<Snapshot> snapshots = new ArrayDeque<>();
+	private Snapshot pending = null;
+	private boolean stopped = false;
+	private int nextCommand = 0;
+	private int captures = 0;
+	private int replaced = 0;
+	private int failedCaptures = 0;
+	private long handOverNanos = 0;
+	private long captureNanos = 0;
+	private long screenshotNanos = 0;
+	private long screenshotBytes = 0;
+	private String archive = null;
+	// start and end (System.nanoTime()) of each capture
+	private final List<long[]> captureIntervals = new ArrayList<>();
+
+	private DiagnosticsRecorder(WebDriver driver, CommandGate commandGate, PhaseTimer phaseTimer, int maxSteps,
+			boolean screenshots) {
+		this.driver = driver;
+		this.commandGate = commandGate;
+		this.phaseTimer = phaseTimer;
+		this.maxSteps = maxSteps;
+		this.screenshots = screenshots;
+
+		thread = new Thread(this::run, "diagnostics");
+		thread.setDaemon(true);
+	}
+
+	// Null if disabled with the irctc.diagnostics system property.
+	public static DiagnosticsRecorder start(WebDriver driver, CommandGate commandGate, PhaseTimer phaseTimer) {
+		if (!Boolean.parseBoolean(System.getProperty("irctc.diagnostics", "true"))) {
+			return null;
+		}
+
+		DiagnosticsRecorder recorder = new DiagnosticsRecorder(driver, commandGate, phaseTimer,
+				Integer.getInteger("irctc.diagnostics.steps", 8),
+				Boolean.parseBoolean(System.getProperty("irctc.diagnostics.screenshots", "true")));
+		recorder.thread.start();
+		return recorder;
+	}
+
+	private void run() {
+		while (true) {
+			try {
+				Runnable task = tasks.take();
+
+				if (task == STOP) {
+					return;
+				}
+
+				task.run();
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Hands the page after the step over to the capture thread, with the driver commands sent since the previous
+	 * step. Returns at once.
+	 */
+	public void capture(String step) {
+		long startNanos = System.nanoTime();
+
+		synchronized (this) {
+			if (stopped) {
+				return;
+			}
+
+			List<PhaseTimer.CommandTiming> commands = phaseTimer.getCommandTimingsSince(nextCommand);
+			nextCommand += commands.size();
+
+			// a step not read yet is replaced, its commands are kept with the one replacing it
+			if (pending != null) {
+				commands = concat(pending.commands, commands);
+				replaced++;
+			} else {
+				tasks.offer(this::readPending);
+			}
+
+			pending = new Snapshot(step, commands);
+			handOverNanos += System.nanoTime() - startNanos;
+		}
+	}
+
+	private static List<PhaseTimer.CommandTiming> concat(List<PhaseTimer.CommandTiming> first,
+			List<PhaseTimer.CommandTiming> second) {
+		List<PhaseTimer.CommandTiming> commands = new ArrayList<>(first);
+		commands.addAll(second);
+		return commands;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readPending() {
+		Snapshot snapshot;
+
+		synchronized (this) {
+			snapshot = pending;
+			pending = null;
+		}
+
+		long startNanos = System.nanoTime();
+		long screenshotStartNanos = startNanos;
+		boolean failed = false;
+
+		try {
+			if (commandGate.awaitBackground(FLOW_COMMAND_WAIT)) {
+				startNanos = System.nanoTime();
+
+				try {
+					Object page = ((JavascriptExecutor) driver).executeScript(SNAPSHOT_SCRIPT, MAX_HTML_CHARS);
+
+					if (page instanceof Map) {
+						snapshot.page = (Map<String, Object>) page;
+					}
+
+					screenshotStartNanos = System.nanoTime();
+
+					if (screenshots) {
+						snapshot.screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+					}
+				} finally {
+					commandGate.endBackground();
+				}
+			} else {
+				// e.g. the flow waited for a page all along, the step is kept with its commands
+				snapshot.error = "Flow commands kept running for " + FLOW_COMMAND_WAIT.getSeconds() + " seconds";
+				failed = true;
+			}
+		} catch (WebDriverException e) {
+			// e.g. an alert is open or the page is being unloaded, the step is kept with what could be read
+			snapshot.error = e.getClass().getSimpleName() + ": " + firstLine(e.getMessage());
+			failed = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			snapshot.error = "Interrupted";
+			failed = true;
+		}
+
+		long endNanos = System.nanoTime();
+
+		synchronized (this) {
+			snapshots.addLast(snapshot);
+
+			while (snapshots.size() > maxSteps) {
+				snapshots.removeFirst();
+			}
+
+			captures++;
+			captureNanos += endNanos - startNanos;
+			captureIntervals.add(new long[] { startNanos, endNanos });
+
+			if (snapshot.screenshot != null) {
+				screenshotNanos += endNanos - screenshotStartNanos;
+				screenshotBytes += snapshot.screenshot.length;
+			}
+
+			if (failed) {
+				failedCaptures++;
+			}
+		}
+	}
+
+	private static String firstLine(String message) {
+		return message == null ? "" : message.split("\n", 2)[0];
+	}
+
+	/*
+	 * Waits for the step being read, after which the driver is no longer used, e.g. before an alert is shown.
+	 * Steps captured afterwards are ignored.
+	 */
+	public void stop() {
+		synchronized (this) {
+			if (stopped) {
+				return;
+			}
+
+			stopped = true;
+		}
+
+		tasks.offer(STOP);
+
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Zips the kept steps and the failure on the log thread, the recorder should be stopped first.
+	public void writeArchive(Throwable failure) {
+		final List<Snapshot> steps;
+
+		synchronized (this) {
+			steps = new ArrayList<>(snapshots);
+		}
+
+		Instant failedAt = Instant.now();
+		Path directory = Paths.get(System.getProperty("irctc.runs.dir", "runs"));
+		Path file = directory.resolve("failure-" + archiveFileDateTimeFormatter.format(failedAt) + ".zip");
+
+		synchronized (this) {
+			archive = file.toString();
+		}
+
+		BookingLog.submit(() -> {
+			try {
+				Files.createDirectories(directory);
+
+				try (OutputStream os = Files.newOutputStream(file); ZipOutputStream zip = new ZipOutputStream(os)) {
+					StringWriter stackTrace = new StringWriter();
+					failure.printStackTrace(new PrintWriter(stackTrace));
+					writeEntry(zip, "failure.txt", failedAt + "\n" + stackTrace);
+
+					for (int i = 0; i < steps.size(); i++) {
+						steps.get(i).write(zip, String.format("%02d-%s/", i + 1, steps.get(i).step));
+					}
+				}
+
+				System.out.println("Failure diagnostics written to: " + file.toAbsolutePath());
+			} catch (Exception e) {
+				System.err.println("Unable to write failure diagnostics: " + e);
+			}
+		});
+	}
+
+	private static void writeEntry(ZipOutputStream zip, String name, String text) throws IOException {
+		writeEntry(zip, name, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void writeEntry(ZipOutputStream zip, String name, byte[] bytes) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write(bytes);
+		zip.closeEntry();
+	}
+
+	/*
+	 * Steps captured and replaced before they were read, the time the booking thread spent handing them over, the
+	 * time the capture thread spent reading them and how long the flow commands overlapped a capture, for the run
+	 * summary.
+	 */
+	public synchronized Map<String, Object> getSummary() {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("maxSteps", maxSteps);
+		summary.put("screenshots", screenshots);
+		summary.put("captures", captures);
+		summary.put("replaced", replaced);
+		summary.put("failedCaptures", failedCaptures);
+		summary.put("handOverMicros", handOverNanos / 1e3);
+		summary.put("captureMillis", captureNanos / 1e6);
+		summary.put("screenshotMillis", screenshotNanos / 1e6);
+		summary.put("screenshotBytes", screenshotBytes);
+		putBlocked(summary);
+		summary.put("archive", archive);
+		return Collections.unmodifiableMap(summary);
+	}
+
+	/*
+	 * Flow commands sent while a page was being read and the time they overlapped the capture, which is about
+	 * how long the browser kept them waiting for it.
+	 */
+	private void putBlocked(Map<String, Object> summary) {
+		long runStartNanos = phaseTimer.getRunStartNanos();
+		int blockedCommands = 0;
+		long blockedNanos = 0;
+
+		for (PhaseTimer.CommandTiming command : phaseTimer.getCommandTimingsSince(0)) {
+			long commandStartNanos = runStartNanos + command.offsetNanos;
+			long commandEndNanos = commandStartNanos + command.durationNanos;
+			long overlapNanos = 0;
+
+			for (long[] interval : captureIntervals) {
+				overlapNanos += Math.max(0, Math.min(commandEndNanos, interval[1])
+						- Math.max(commandStartNanos, interval[0]));
+			}
+
+			if (overlapNanos > 0) {
+				blockedCommands++;
+				blockedNanos += overlapNanos;
+			}
+		}
+
+		summary.put("blockedCommands", blockedCommands);
+		summary.put("blockedMillis", blockedNanos / 1e6);
+	}
+
+	private static class Snapshot {
+
+		private final String step;
+		private final Instant capturedAt = Instant.now();
+		private final List<PhaseTimer.CommandTiming> commands;
+		private Map<String, Object> page = null;
+		private byte[] screenshot = null;
+		private String error = null;
+
+		private Snapshot(String step, List<PhaseTimer.CommandTiming> commands) {
+			this.step = step;
+			this.commands = commands;
+		}
+
+		private void write(ZipOutputStream zip, String directory) throws IOException {
+			Map<String, Object> details = new LinkedHashMap<>();
+			details.put("step", step);
+			details.put("capturedAt", capturedAt.toString());
+			details.put("error", error);
+
+			if (page != null) {
+				details.put("url", page.get("url"));
+				details.put("title", page.get("title"));
+				details.put("htmlLength", page.get("htmlLength"));
+				details.put("console", page.get("console"));
+			}
+
+			List<Map<String, Object>> commandDetails = new ArrayList<>();
+
+			for (PhaseTimer.CommandTiming command : commands) {
+				Map<String, Object> commandDetail = new LinkedHashMap<>();
+				commandDetail.put("command", command.getCommand());
+				commandDetail.put("target", command.target);
+				commandDetail.put("phase", command.getPhase());
+				commandDetail.put("durationMillis", command.getDurationNanos() / 1e6);
+				commandDetail.put("failed", command.failed);
+				commandDetails.add(commandDetail);
+			}
+
+			details.put("commands", commandDetails);
+			writeEntry(zip, directory + "step.json", new Json().toJson(details));
+
+			if (page != null) {
+				writeEntry(zip, directory + "page.html", String.valueOf(page.get("html")));
+			}
+
+			if (screenshot != null) {
+				writeEntry(zip, directory + "screenshot.png", screenshot);
+			}
+		}
+	}
+}
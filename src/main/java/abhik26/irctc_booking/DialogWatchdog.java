@@ -0,0 +1,319 @@
+package abhik26.irctc_booking;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.UnhandledAlertException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+/*
+ * Dismisses the dialogs that may interrupt the flow (pending transaction popup, station confirmation, different
+ * coaches) as soon as they appear, so the booking steps never wait for a dialog that usually does not show up.
+ * A MutationObserver installed in the page clicks the dismiss button of every known dialog signature, and a
+ * background thread re-installs it after a navigation and collects what it handled. The thread only sends
+ * short scripts, and only while no flow command is running (CommandGate), as the driver runs the commands of the
+ * session one at a time: a poll due during a flow command is skipped, and a flow command sent during a poll waits
+ * for it in the driver, which is counted in the run summary (backgroundCommands). It is stopped (waiting for its
+ * last command) before the flow shows an alert of its own, as any command sent while an alert is open would
+ * dismiss it. Alerts opened by the site are dismissed by the driver on the next poll and counted as well. The
+ * polling is paused from the tatkal trigger to 'Book Now', so that no poll is queued in the browser ahead of the
+ * clicks; the observer already installed in the page keeps dismissing the dialogs meanwhile.
+ */
+public class DialogWatchdog implements AutoCloseable {
+
+	private static final List<DialogSignature> SIGNATURES = Arrays.asList(
+			new DialogSignature("pending_transaction", By.xpath(
+					"//div[@aria-labelledby='ui-dialog-2-label'] //button[contains(text(), 'Close')]"), null),
+			// shown after 'Book Now' when the stations are not exactly the ones of the train
+			new DialogSignature("station_confirm",
+					By.xpath("//span[@class='ui-button-text ui-clickable'][contains(text(), 'Yes')]"),
+					BookingState.SEARCHED.getReachedWhen()),
+			// 'Passengers may get berth allotted in different coaches', answered with 'No'
+			new DialogSignature("different_coaches",
+					By.xpath("//span[@class='ui-button-text ui-clickable'][contains(text(), 'No')]"),
+					BookingState.CLASS_SELECTED.getReachedWhen()));
+
+	private static final String ALERT = "alert";
+
+	private static final String WATCH_SCRIPT = ""
+			+ "var signatures = arguments[0], state = window.__irctcDialogWatchdog;"
+			+ "if (!state) {"
+			+ "  state = window.__irctcDialogWatchdog = { handled: [], scheduled: false };"
+			+ "  var locate = function (condition) {"
+			+ "    var element = condition.using === 'xpath'"
+			+ "      ? document.evaluate(condition.value, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null)"
+			+ "          .singleNodeValue"
+			+ "      : document.querySelector(condition.value);"
+			+ "    if (element && condition.visible"
+			+ "        && !(element.offsetWidth || element.offsetHeight || element.getClientRects().length)) {"
+			+ "      return null;"
+			+ "    }"
+			+ "    return element;"
+			+ "  };"
+			+ "  var check = function () {"
+			+ "    state.scheduled = false;"
+			+ "    for (var i = 0; i < signatures.length; i++) {"
+			+ "      var signature = signatures[i];"
+			+ "      if (signature.context && !locate(signature.context)) { continue; }"
+			+ "      var button = locate(signature.dismiss);"
+			+ "      if (button && !button.__irctcDismissed) {"
+			+ "        button.__irctcDismissed = true;"
+			+ "        button.click();"
+			+ "        state.handled.push({ name: signature.name, at: Date.now() });"
+			+ "      }"
+			+ "    }"
+			+ "  };"
+			// mutations are coalesced into one check per task
+			+ "  new MutationObserver(function () {"
+			+ "    if (!state.scheduled) { state.scheduled = true; Promise.resolve().then(check); }"
+			+ "  }).observe(document, { childList: true, subtree: true, attributes: true });"
+			+ "  check();"
+			+ "}"
+			+ "var handled = state.handled;"
+			+ "state.handled = [];"
+			+ "return handled;";
+
+	private final JavascriptExecutor jsExecutor;
+	private final CommandGate commandGate;
+	private final long pollIntervalMillis;
+	private final List<Map<String, Object>> scriptSignatures = new ArrayList<>();
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private final Thread thread;
+	// held by a poll, so that pausing waits for the poll in progress
+	private final Object pollLock = new Object();
+	private volatile boolean paused = false;
+
+	// guarded by this
+	private final Map<String, HandledDialog> handledDialogs = new LinkedHashMap<>();
+	private int polls = 0;
+	private int failedPolls = 0;
+	private long pollNanos = 0;
+	private int skippedPolls = 0;
+	private int pauses = 0;
+	private long pausedAtNanos = 0;
+	private long pausedNanos = 0;
+
+	private DialogWatchdog(WebDriver driver, CommandGate commandGate, long pollIntervalMillis) {
+		this.jsExecutor = (JavascriptExecutor) driver;
+		this.commandGate = commandGate;
+		this.pollIntervalMillis = pollIntervalMillis;
+
+		for (DialogSignature signature : SIGNATURES) {
+			scriptSignatures.add(signature.toScriptArgument());
+		}
+
+		thread = new Thread(this::run, "dialog-watchdog");
+		thread.setDaemon(true);
+	}
+
+	/*
+	 * Starts watching the page of the driver, polling every irctc.dialog.poll_millis milliseconds (default 250)
+	 * through the command gate of the session. The driver should not be the one decorated for the phase timer, so
+	 * that the polls are not counted as commands of the flow.
+	 */
+	public static DialogWatchdog start(WebDriver driver, CommandGate commandGate) {
+		DialogWatchdog watchdog = new DialogWatchdog(driver, commandGate, Long.getLong("irctc.dialog.poll_millis",
+				250));
+		watchdog.thread.start();
+		return watchdog;
+	}
+
+	private void run() {
+		try {
+			while (!stopped.await(pollIntervalMillis, TimeUnit.MILLISECONDS)) {
+				synchronized (pollLock) {
+					// a poll due while a flow command runs is skipped, the next one is sent in time
+					if (paused) {
+						continue;
+					}
+
+					if (!commandGate.tryBackground()) {
+						synchronized (this) {
+							skippedPolls++;
+						}
+
+						continue;
+					}
+
+					try {
+						poll();
+					} finally {
+						commandGate.endBackground();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void poll() {
+		long startNanos = System.nanoTime();
+		boolean failed = false;
+
+		try {
+			Object result = jsExecutor.executeScript(WATCH_SCRIPT, scriptSignatures);
+
+			if (result instanceof List) {
+				for (Map<String, Object> handled : (List<Map<String, Object>>) result) {
+					record(String.valueOf(handled.get("name")), ((Number) handled.get("at")).longValue());
+				}
+			}
+		} catch (UnhandledAlertException e) {
+			// already dismissed by the driver, as no prompt behaviour is configured
+			record(ALERT, System.currentTimeMillis());
+			BookingLog.info("Alert dismissed: " + e.getAlertText());
+		} catch (WebDriverException e) {
+			// e.g. the page is being unloaded, the observer is installed again on the next poll
+			failed = true;
+		}
+
+		synchronized (this) {
+			polls++;
+			pollNanos += System.nanoTime() - startNanos;
+
+			if (failed) {
+				failedPolls++;
+			}
+		}
+	}
+
+	private void record(String name, long handledAtMillis) {
+		synchronized (this) {
+			handledDialogs.computeIfAbsent(name, key -> new HandledDialog()).record(handledAtMillis);
+		}
+
+		BookingMetrics.dialogHandled(name);
+
+		if (!ALERT.equals(name)) {
+			BookingLog.info("Dialog dismissed: " + name);
+		}
+	}
+
+	// Stops polling until resumed, waiting for the poll in progress. No poll is sent once this returns.
+	public void pause() {
+		synchronized (pollLock) {
+			if (paused) {
+				return;
+			}
+
+			paused = true;
+		}
+
+		synchronized (this) {
+			pauses++;
+			pausedAtNanos = System.nanoTime();
+		}
+	}
+
+	public void resume() {
+		synchronized (pollLock) {
+			if (!paused) {
+				return;
+			}
+
+			paused = false;
+		}
+
+		synchronized (this) {
+			pausedNanos += System.nanoTime() - pausedAtNanos;
+		}
+	}
+
+	/*
+	 * Stops the polling, waiting for the command in progress, and collects the dialogs handled since the last
+	 * poll. No command is sent by the watchdog once this returns.
+	 */
+	@Override
+	public void close() {
+		if (stopped.getCount() == 0) {
+			return;
+		}
+
+		stopped.countDown();
+
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		poll();
+	}
+
+	// Handled dialogs by signature name (count, first and last time) and the poll counters, for the run summary.
+	public synchronized Map<String, Object> getSummary() {
+		List<Map<String, Object>> dialogs = new ArrayList<>();
+
+		for (Map.Entry<String, HandledDialog> dialog : handledDialogs.entrySet()) {
+			Map<String, Object> summary = new LinkedHashMap<>();
+			summary.put("name", dialog.getKey());
+			summary.put("count", dialog.getValue().count);
+			summary.put("firstHandledAt", Instant.ofEpochMilli(dialog.getValue().firstMillis).toString());
+			summary.put("lastHandledAt", Instant.ofEpochMilli(dialog.getValue().lastMillis).toString());
+			dialogs.add(summary);
+		}
+
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("pollIntervalMillis", pollIntervalMillis);
+		summary.put("polls", polls);
+		summary.put("failedPolls", failedPolls);
+		summary.put("skippedPolls", skippedPolls);
+		summary.put("pollMillis", pollNanos / 1e6);
+		summary.put("pauses", pauses);
+		summary.put("pausedMillis", pausedNanos / 1e6);
+		summary.put("dialogs", dialogs);
+		return Collections.unmodifiableMap(summary);
+	}
+
+	private static class DialogSignature {
+
+		private final String name;
+		private final By dismiss;
+		private final By context;
+
+		/*
+		 * The dismiss button is clicked once it is visible, if the context (when given) is present as well, so
+		 * that generic buttons like 'Yes' and 'No' are only clicked on the page the dialog belongs to.
+		 */
+		private DialogSignature(String name, By dismiss, By context) {
+			this.name = name;
+			this.dismiss = dismiss;
+			this.context = context;
+		}
+
+		private Map<String, Object> toScriptArgument() {
+			Map<String, Object> argument = new LinkedHashMap<>();
+			argument.put("name", name);
+			argument.put("dismiss", PageWaiter.visible(dismiss).toScriptArgument());
+			argument.put("context", context == null ? null : PageWaiter.present(context).toScriptArgument());
+			return argument;
+		}
+	}
+
+	private static class HandledDialog {
+
+		private int count = 0;
+		private long firstMillis;
+		private long lastMillis;
+
+		private void record(long handledAtMillis) {
+			if (count++ == 0) {
+				firstMillis = handledAtMillis;
+			}
+
+			lastMillis = handledAtMillis;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package abhik26.irctc_booking;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+/*
+ * Times every WebDriver round-trip (find, click, sendKeys, executeScript, actions, timeouts...) of a driver
+ * decorated with it and reports them to the phase timer and as JFR events, and tells the command gate of the
+ * session while one is running. Typed text is never recorded.
+ */
+public class DriverCommandListener implements WebDriverListener {
+
+	// Calls answered by the client itself, without a round-trip to the driver.
+	private static final Set<String> LOCAL_METHODS = new HashSet<>(Arrays.asList("manage", "switchTo", "navigate",
+			"timeouts", "window", "logs", "toString", "hashCode", "equals", "getWrappedDriver", "getWrappedElement",
+			"getCoordinates", "getId"));
+
+	private static final int MAX_TARGET_LENGTH = 80;
+
+	private final PhaseTimer phaseTimer;
+	private final CommandGate commandGate;
+	private final ThreadLocal<ArrayDeque<PendingCommand>> pendingCommands = ThreadLocal.withInitial(ArrayDeque::new);
+
+	public DriverCommandListener(PhaseTimer phaseTimer, CommandGate commandGate) {
+		this.phaseTimer = phaseTimer;
+		this.commandGate = commandGate;
+	}
+
+	// For a driver whose session is used by no other thread.
+	public static WebDriver decorate(WebDriver driver, PhaseTimer phaseTimer) {
+		return decorate(driver, phaseTimer, new CommandGate());
+	}
+
+	public static WebDriver decorate(WebDriver driver, PhaseTimer phaseTimer, CommandGate commandGate) {
+		return new EventFiringDecorator<>(new DriverCommandListener(phaseTimer, commandGate)).decorate(driver);
+	}
+
+	@Override
+	public void beforeAnyCall(Object target, Method method, Object[] args) {
+		if (LOCAL_METHODS.contains(method.getName())) {
+			return;
+		}
+
+		commandGate.flowCommandStarted();
+		PendingCommand pendingCommand = new PendingCommand();
+		pendingCommand.method = method;
+		pendingCommand.event.begin();
+		pendingCommand.startNanos = System.nanoTime();
+		pendingCommands.get().push(pendingCommand);
+	}
+
+	@Override
+	public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+		complete(method, args, false);
+	}
+
+	@Override
+	public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+		complete(method, args, true);
+	}
+
+	private void complete(Method method, Object[] args, boolean failed) {
+		long endNanos = System.nanoTime();
+
+		// every call that started a command finishes it, even one left out of the timings below
+		if (!LOCAL_METHODS.contains(method.getName())) {
+			commandGate.flowCommandFinished();
+		}
+
+		ArrayDeque<PendingCommand> stack = pendingCommands.get();
+
+		if (stack.isEmpty() || !stack.peek().method.equals(method)) {
+			return;
+		}
+
+		PendingCommand pendingCommand = stack.pop();
+		String target = describe(args);
+		phaseTimer.recordCommand(method.getName(), target, pendingCommand.startNanos, endNanos, failed);
+
+		BookingEvents.DriverCommandEvent event = pendingCommand.event;
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.command = method.getName();
+			event.target = target;
+			event.failed = failed;
+			event.commit();
+		}
+	}
+
+	// Locator or script of the command; other arguments (e.g. typed keys) are left out intentionally.
+	private static String describe(Object[] args) {
+		if (args == null || args.length == 0) {
+			return null;
+		}
+
+		if (args[0] instanceof By) {
+			return truncate(args[0].toString());
+		}
+
+		if (args[0] instanceof String) {
+			return truncate((String) args[0]);
+		}
+
+		return null;
+	}
+
+	private static String truncate(String value) {
+		return value.length() > MAX_TARGET_LENGTH ? value.substring(0, MAX_TARGET_LENGTH) + "..." : value;
+	}
+
+	private static class PendingCommand {
+
+		final BookingEvents.DriverCommandEvent event = new BookingEvents.DriverCommandEvent();
+		Method method;
+		long startNanos;
+	}
+}
@@ -0,0 +1,192 @@
+package abhik26.irctc_booking;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.remote.http.ClientConfig;
+
+/*
+ * Settings of the browser started by DriverUtility. Read from system properties:
+ *   irctc.driver.browser             CHROME, EDGE or FIREFOX (default CHROME)
+ *   irctc.driver.path                driver binary, otherwise localdata/<driver> from the classpath if present,
+ *                                    otherwise the driver is resolved by Selenium Manager
+ *   irctc.driver.headless            false, true (old headless mode) or new (default false)
+ *   irctc.driver.page_load_strategy  NORMAL, EAGER or NONE (default NORMAL)
+ *   irctc.driver.window              maximized or <width>x<height>, e.g. 1366x768 (default maximized)
+ *   irctc.driver.args                additional comma separated browser arguments
+ *   irctc.driver.http_client         HTTP client of the commands sent to the driver: netty or jdk-http-client
+ *                                    (default: the Selenium default, netty)
+ *   irctc.driver.connect_timeout_millis  connection timeout to the driver (default 2000, the driver is local)
+ *   irctc.driver.read_timeout_seconds    response timeout of a command, longer than the longest script wait of
+ *                                        the flow (default 180)
+ *
+ * The same keys (without the prefix) are accepted in a comma separated spec, e.g.
+ * "browser=chrome,headless=new,page_load_strategy=eager", to compare configurations in DriverBenchmark. As
+ * the spec itself is comma separated, args in a spec hold a single argument.
+ */
+public class DriverConfig {
+
+	public static enum Headless {
+		FALSE, TRUE, NEW
+	}
+
+	private static final String PROPERTY_PREFIX = "irctc.driver.";
+
+	private BrowserName browserName = BrowserName.CHROME;
+	private String driverPath = null;
+	private Headless headless = Headless.FALSE;
+	private PageLoadStrategy pageLoadStrategy = PageLoadStrategy.NORMAL;
+	private Dimension windowSize = null;
+	private List<String> arguments = new ArrayList<>();
+	private String httpClient = null;
+	private Duration connectTimeout = Duration.ofMillis(2000);
+	private Duration readTimeout = Duration.ofSeconds(180);
+
+	public static DriverConfig fromSystemProperties() {
+		DriverConfig config = new DriverConfig();
+
+		for (String key : Arrays.asList("browser", "path", "headless", "page_load_strategy", "window", "args",
+				"http_client", "connect_timeout_millis", "read_timeout_seconds")) {
+			String value = System.getProperty(PROPERTY_PREFIX + key);
+
+			if (value != null && !value.trim().isEmpty()) {
+				config.set(key, value.trim());
+			}
+		}
+
+		return config;
+	}
+
+	// System property configuration overridden by the settings of the spec.
+	public static DriverConfig fromSpec(String spec) {
+		DriverConfig config = fromSystemProperties();
+
+		for (String setting : spec.split(",")) {
+			int index = setting.indexOf('=');
+
+			if (index <= 0) {
+				throw new RuntimeException("Invalid driver setting: " + setting);
+			}
+
+			config.set(setting.substring(0, index).trim(), setting.substring(index + 1).trim());
+		}
+
+		return config;
+	}
+
+	private void set(String key, String value) {
+		try {
+			switch (key) {
+				case "browser":
+					browserName = BrowserName.valueOf(value.toUpperCase());
+					break;
+				case "path":
+					driverPath = value;
+					break;
+				case "headless":
+					headless = Headless.valueOf(value.toUpperCase());
+					break;
+				case "page_load_strategy":
+					pageLoadStrategy = PageLoadStrategy.valueOf(value.toUpperCase());
+					break;
+				case "window":
+					windowSize = parseWindowSize(value);
+					break;
+				case "args":
+					arguments = new ArrayList<>();
+
+					for (String argument : value.split(",")) {
+						if (!argument.trim().isEmpty()) {
+							arguments.add(argument.trim());
+						}
+					}
+					break;
+				case "http_client":
+					if (!Arrays.asList("netty", "jdk-http-client").contains(value.toLowerCase())) {
+						throw new IllegalArgumentException(value);
+					}
+
+					httpClient = value.toLowerCase();
+					break;
+				case "connect_timeout_millis":
+					connectTimeout = Duration.ofMillis(Long.parseLong(value));
+					break;
+				case "read_timeout_seconds":
+					readTimeout = Duration.ofSeconds(Long.parseLong(value));
+					break;
+				default:
+					throw new RuntimeException("Unknown driver setting: " + key);
+			}
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException("Invalid value for driver setting: " + key + "=" + value);
+		}
+	}
+
+	private static Dimension parseWindowSize(String value) {
+		if ("maximized".equalsIgnoreCase(value)) {
+			return null;
+		}
+
+		String[] size = value.toLowerCase().split("x");
+
+		if (size.length != 2) {
+			throw new IllegalArgumentException(value);
+		}
+
+		return new Dimension(Integer.parseInt(size[0].trim()), Integer.parseInt(size[1].trim()));
+	}
+
+	public DriverConfig withBrowserName(BrowserName browserName) {
+		this.browserName = browserName;
+		return this;
+	}
+
+	public BrowserName getBrowserName() {
+		return browserName;
+	}
+
+	public String getDriverPath() {
+		return driverPath;
+	}
+
+	public Headless getHeadless() {
+		return headless;
+	}
+
+	public PageLoadStrategy getPageLoadStrategy() {
+		return pageLoadStrategy;
+	}
+
+	// null for a maximized window
+	public Dimension getWindowSize() {
+		return windowSize;
+	}
+
+	public List<String> getArguments() {
+		return Collections.unmodifiableList(arguments);
+	}
+
+	// null for the Selenium default
+	public String getHttpClient() {
+		return httpClient;
+	}
+
+	// Timeouts of the commands sent to the driver.
+	public ClientConfig getClientConfig() {
+		return ClientConfig.defaultConfig().connectionTimeout(connectTimeout).readTimeout(readTimeout);
+	}
+
+	@Override
+	public String toString() {
+		return "browser=" + browserName.toString().toLowerCase() + ",headless=" + headless.toString().toLowerCase()
+				+ ",page_load_strategy=" + pageLoadStrategy.toString().toLowerCase() + ",window="
+				+ (windowSize == null ? "maximized" : windowSize.getWidth() + "x" + windowSize.getHeight())
+				+ (arguments.isEmpty() ? "" : ",args=" + String.join(" ", arguments))
+				+ (httpClient == null ? "" : ",http_client=" + httpClient);
+	}
+}
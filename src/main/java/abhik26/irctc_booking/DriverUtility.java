@@ -1,43 +1,131 @@
 package abhik26.irctc_booking;
 
+import java.net.URL;
+
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.chromium.ChromiumDriver;
+import org.openqa.selenium.chromium.ChromiumOptions;
 import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeDriverService;
 import org.openqa.selenium.edge.EdgeOptions;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
 
 public interface DriverUtility {
 
+	// Browser configured by the irctc.driver.* system properties, see DriverConfig.
+	public static WebDriver getDriver() {
+		return getDriver(DriverConfig.fromSystemProperties());
+	}
+
 	public static WebDriver getDriver(BrowserName browserName) {
-		WebDriver driver = null;
-		
 		if (browserName == null) {
 			throw new NullPointerException("browser name is not provided");
 		}
 
-		final String PATH_PREFIX = "localdata/";
-		
-		switch (browserName) {
+		return getDriver(DriverConfig.fromSystemProperties().withBrowserName(browserName));
+	}
+
+	public static WebDriver getDriver(DriverConfig config) {
+		WebDriver driver = null;
+
+		// the client of the commands to the driver is chosen by Selenium when the driver is created
+		if (config.getHttpClient() != null) {
+			System.setProperty("webdriver.http.factory", config.getHttpClient());
+		}
+
+		switch (config.getBrowserName()) {
 			case CHROME:
-				System.setProperty("webdriver.chrome.driver",
-						ClassLoader.getSystemResource(PATH_PREFIX + "chromedriver.exe").getPath());
+				setDriverPath(config, "webdriver.chrome.driver", "chromedriver");
 				ChromeOptions chromeOptions = new ChromeOptions();
-				chromeOptions.addArguments("--start-maximized");
-				chromeOptions.addArguments("--disable-notifications");
+				applyChromiumOptions(chromeOptions, config);
 				// options.addArguments("--user-data-dir=C:\\Users\\" + System.getProperty("user.name")
 				// 		+ "\\AppData\\Local\\Google\\Chrome\\User Data");
-				driver = new ChromeDriver(chromeOptions);
+				driver = new ChromeDriver(ChromeDriverService.createDefaultService(), chromeOptions,
+						config.getClientConfig());
 				break;
 			case EDGE:
-				System.setProperty("webdriver.edge.driver",
-						ClassLoader.getSystemResource(PATH_PREFIX + "msedgedriver.exe").getPath());
+				setDriverPath(config, "webdriver.edge.driver", "msedgedriver");
 				EdgeOptions edgeOptions = new EdgeOptions();
-				edgeOptions.addArguments("--start-maximized");
-				edgeOptions.addArguments("--disable-notifications");
-				driver = new EdgeDriver(edgeOptions);
+				applyChromiumOptions(edgeOptions, config);
+				driver = new EdgeDriver(EdgeDriverService.createDefaultService(), edgeOptions,
+						config.getClientConfig());
+				break;
+			case FIREFOX:
+				setDriverPath(config, "webdriver.gecko.driver", "geckodriver");
+				FirefoxOptions firefoxOptions = new FirefoxOptions();
+				firefoxOptions.setPageLoadStrategy(config.getPageLoadStrategy());
+				firefoxOptions.addPreference("dom.webnotifications.enabled", false);
+
+				if (config.getHeadless() != DriverConfig.Headless.FALSE) {
+					firefoxOptions.addArguments("-headless");
+				}
+
+				firefoxOptions.addArguments(config.getArguments());
+				driver = new FirefoxDriver(GeckoDriverService.createDefaultService(), firefoxOptions,
+						config.getClientConfig());
+
+				if (config.getWindowSize() == null) {
+					driver.manage().window().maximize();
+				} else {
+					driver.manage().window().setSize(config.getWindowSize());
+				}
 				break;
 		}
-		
+
+		/*
+		 * ads, analytics etc. are not loaded at all instead of being waited for, the filter of the driver is found
+		 * with ResourceFilter.getInstalled for its statistics
+		 */
+		ResourceFilter resourceFilter = ResourceFilter.fromSystemProperties();
+
+		if (resourceFilter != null && driver instanceof ChromiumDriver) {
+			resourceFilter.install(driver);
+		}
+
 		return driver;
 	}
+
+	static void applyChromiumOptions(ChromiumOptions<?> options, DriverConfig config) {
+		options.setPageLoadStrategy(config.getPageLoadStrategy());
+		options.addArguments("--disable-notifications");
+
+		if (config.getWindowSize() == null) {
+			options.addArguments("--start-maximized");
+		} else {
+			options.addArguments("--window-size=" + config.getWindowSize().getWidth() + ","
+					+ config.getWindowSize().getHeight());
+		}
+
+		if (config.getHeadless() == DriverConfig.Headless.NEW) {
+			options.addArguments("--headless=new");
+		} else if (config.getHeadless() == DriverConfig.Headless.TRUE) {
+			options.addArguments("--headless");
+		}
+
+		options.addArguments(config.getArguments());
+	}
+
+	/*
+	 * Driver binary from the configuration, otherwise from the localdata folder of the classpath (with the .exe
+	 * extension on Windows). Without either, Selenium Manager downloads the driver matching the browser.
+	 */
+	static void setDriverPath(DriverConfig config, String systemProperty, String driverName) {
+		if (config.getDriverPath() != null) {
+			System.setProperty(systemProperty, config.getDriverPath());
+			return;
+		}
+
+		final String PATH_PREFIX = "localdata/";
+		boolean windows = System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+		URL driverUrl = ClassLoader.getSystemResource(PATH_PREFIX + driverName + (windows ? ".exe" : ""));
+
+		if (driverUrl != null) {
+			System.setProperty(systemProperty, driverUrl.getPath());
+		}
+	}
 }
@@ -0,0 +1,127 @@
+package abhik26.irctc_booking;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.Actions;
+
+/*
+ * Sends harmless commands of the kinds sent right after the tatkal trigger (find, script, async script, element
+ * state and actions, only reading the page or pausing) while the flow waits for it, so that the client code, the
+ * JSON codecs and the connection to the driver are compiled and open by the time the commands count. The first
+ * round is the cold latency of each command, the median of the last rounds the warm one.
+ *
+ * System property: irctc.warmup.rounds (default 100, 0 to turn the warm-up off).
+ */
+public class DriverWarmup {
+
+	private static final List<String> COMMANDS = Arrays.asList("findElement", "findElements", "executeScript",
+			"executeAsyncScript", "isDisplayed", "getTagName", "actions");
+
+	// the warm latency is the median of this many last rounds
+	private static final int WARM_ROUNDS = 10;
+
+	private final WebDriver driver;
+	private final Map<String, List<Long>> samples = new LinkedHashMap<>();
+	private int rounds = 0;
+	private long elapsedNanos = 0;
+
+	private DriverWarmup(WebDriver driver) {
+		this.driver = driver;
+
+		for (String command : COMMANDS) {
+			samples.put(command, new ArrayList<>());
+		}
+	}
+
+	public static int getConfiguredRounds() {
+		return Integer.getInteger("irctc.warmup.rounds", 100);
+	}
+
+	/*
+	 * Runs up to maxRounds rounds, stopping before the deadline (System.nanoTime()) leaves less than two rounds of
+	 * time. Returns the summary of the rounds run.
+	 */
+	public static Map<String, Object> run(WebDriver driver, int maxRounds, long deadlineNanos) {
+		DriverWarmup warmup = new DriverWarmup(driver);
+		long startNanos = System.nanoTime();
+		long roundNanos = 0;
+
+		while (warmup.rounds < maxRounds && System.nanoTime() + 2 * roundNanos < deadlineNanos) {
+			long roundStartNanos = System.nanoTime();
+			warmup.round();
+			roundNanos = System.nanoTime() - roundStartNanos;
+			warmup.rounds++;
+		}
+
+		warmup.elapsedNanos = System.nanoTime() - startNanos;
+		return warmup.getSummary();
+	}
+
+	private void round() {
+		long startNanos = System.nanoTime();
+		WebElement body = driver.findElement(By.tagName("body"));
+		startNanos = sample("findElement", startNanos);
+
+		driver.findElements(By.cssSelector("body > *"));
+		startNanos = sample("findElements", startNanos);
+
+		((JavascriptExecutor) driver).executeScript("return document.readyState");
+		startNanos = sample("executeScript", startNanos);
+
+		((JavascriptExecutor) driver).executeAsyncScript("arguments[arguments.length - 1](document.readyState)");
+		startNanos = sample("executeAsyncScript", startNanos);
+
+		body.isDisplayed();
+		startNanos = sample("isDisplayed", startNanos);
+
+		body.getTagName();
+		startNanos = sample("getTagName", startNanos);
+
+		new Actions(driver).pause(Duration.ZERO).perform();
+		sample("actions", startNanos);
+	}
+
+	private long sample(String command, long startNanos) {
+		long endNanos = System.nanoTime();
+		samples.get(command).add(endNanos - startNanos);
+		return endNanos;
+	}
+
+	// Per command: the latency of the first round (cold) and the median of the last rounds (warm).
+	private Map<String, Object> getSummary() {
+		Map<String, Object> commands = new LinkedHashMap<>();
+
+		for (Map.Entry<String, List<Long>> command : samples.entrySet()) {
+			List<Long> latencies = command.getValue();
+
+			if (latencies.isEmpty()) {
+				continue;
+			}
+
+			List<Long> warm = new ArrayList<>(latencies.subList(Math.max(0, latencies.size() - WARM_ROUNDS),
+					latencies.size()));
+			Collections.sort(warm);
+
+			Map<String, Object> latency = new LinkedHashMap<>();
+			latency.put("coldMicros", latencies.get(0) / 1e3);
+			latency.put("warmMicros", warm.get(warm.size() / 2) / 1e3);
+			commands.put(command.getKey(), latency);
+		}
+
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("rounds", rounds);
+		summary.put("elapsedMillis", elapsedNanos / 1e6);
+		summary.put("commands", commands);
+		return summary;
+	}
+}
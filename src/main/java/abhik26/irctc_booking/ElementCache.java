@@ -0,0 +1,164 @@
+package abhik26.irctc_booking;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+
+/*
+ * Element handles cached by locator, scoped to a parent handle where the locator is relative to it (e.g. the
+ * class cell of a train card). A handle is resolved once and reused, and an action that fails because Angular
+ * re-rendered the element is run again on the element resolved anew. The element is looked for inside its parent
+ * if the parent is still attached to the page, otherwise the parent is resolved again first, up to the root.
+ * Handles are meant for the flow thread only.
+ */
+public class ElementCache {
+
+	// Runs of an action on a re-resolved element, after the first run failed with a stale reference.
+	private static final int MAX_STALE_RETRIES = 3;
+
+	private final PageWaiter waiter;
+	private final Map<String, Handle> handles = new HashMap<>();
+
+	private int hits = 0;
+	private int misses = 0;
+	private int reResolves = 0;
+	private int staleRecoveries = 0;
+
+	public ElementCache(PageWaiter waiter) {
+		this.waiter = waiter;
+	}
+
+	// Handle of an element looked for in the whole page.
+	public Handle handle(By by) {
+		return handle(null, by);
+	}
+
+	private Handle handle(Handle parent, By by) {
+		String key = parent == null ? by.toString() : parent.key + " > " + by;
+		return handles.computeIfAbsent(key, value -> new Handle(parent, by, key));
+	}
+
+	// Hits, misses (first resolutions), re-resolutions and recovered stale references, for the run summary.
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("handles", handles.size());
+		statistics.put("hits", hits);
+		statistics.put("misses", misses);
+		statistics.put("reResolves", reResolves);
+		statistics.put("staleRecoveries", staleRecoveries);
+		return statistics;
+	}
+
+	public class Handle {
+
+		private final Handle parent;
+		private final By by;
+		private final String key;
+		private WebElement element = null;
+		private boolean resolved = false;
+
+		private Handle(Handle parent, By by, String key) {
+			this.parent = parent;
+			this.by = by;
+			this.key = key;
+		}
+
+		// Handle of an element looked for inside this one, the locator should be relative (e.g. ".//button").
+		public Handle child(By by) {
+			return handle(this, by);
+		}
+
+		// Takes an element already found another way (e.g. read from a snapshot), null leaves the handle as is.
+		public Handle seed(WebElement element) {
+			if (element != null) {
+				this.element = element;
+				resolved = true;
+			}
+
+			return this;
+		}
+
+		/*
+		 * The cached element, resolved (waiting for it like PageWaiter.find) if there is none. The element may
+		 * have gone stale since, actions should be run with run or apply to recover from that.
+		 */
+		public WebElement get() {
+			if (element != null) {
+				hits++;
+				return element;
+			}
+
+			if (resolved) {
+				reResolves++;
+			} else {
+				misses++;
+			}
+
+			element = resolve();
+			resolved = true;
+			return element;
+		}
+
+		public void invalidate() {
+			element = null;
+		}
+
+		public void run(Consumer<WebElement> action) {
+			apply(element -> {
+				action.accept(element);
+				return null;
+			});
+		}
+
+		// Applies the action to the element, resolving it again and re-running the action if it went stale.
+		public <T> T apply(Function<WebElement, T> action) {
+			for (int retry = 0;; retry++) {
+				try {
+					T result = action.apply(get());
+
+					if (retry > 0) {
+						staleRecoveries++;
+					}
+
+					return result;
+				} catch (StaleElementReferenceException e) {
+					if (retry == MAX_STALE_RETRIES) {
+						throw e;
+					}
+
+					invalidate();
+				}
+			}
+		}
+
+		private WebElement resolve() {
+			if (parent == null) {
+				return waiter.find(by);
+			}
+
+			for (int retry = 0;; retry++) {
+				try {
+					return waiter.find(parent.get(), by);
+				} catch (StaleElementReferenceException e) {
+					// the parent was re-rendered as well
+					if (retry == MAX_STALE_RETRIES) {
+						throw e;
+					}
+
+					parent.invalidate();
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return key;
+		}
+	}
+}
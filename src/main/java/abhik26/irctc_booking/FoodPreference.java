@@ -0,0 +1,28 @@
+package abhik26.irctc_booking;
+
+public enum FoodPreference {
+
+	VEG("V"), NON_VEG("N"), JAIN_MEAL("J"), VEG_DIABETIC("F"), NON_VEG_DIABETIC("G"), NO_FOOD("D");
+
+	private final String code;
+
+	FoodPreference(String code) {
+		this.code = code;
+	}
+
+	// Option value of the food choice dropdown
+	public String getCode() {
+		return code;
+	}
+
+	// null if the code is not a supported food preference
+	public static FoodPreference fromCode(String code) {
+		for (FoodPreference foodPreference : values()) {
+			if (foodPreference.code.equalsIgnoreCase(code)) {
+				return foodPreference;
+			}
+		}
+
+		return null;
+	}
+}
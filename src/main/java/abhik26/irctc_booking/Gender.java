@@ -0,0 +1,28 @@
+package abhik26.irctc_booking;
+
+public enum Gender {
+
+	MALE("M"), FEMALE("F"), TRANSGENDER("T");
+
+	private final String code;
+
+	Gender(String code) {
+		this.code = code;
+	}
+
+	// Option value of the gender dropdown
+	public String getCode() {
+		return code;
+	}
+
+	// null if the code is not a supported gender
+	public static Gender fromCode(String code) {
+		for (Gender gender : values()) {
+			if (gender.code.equalsIgnoreCase(code)) {
+				return gender;
+			}
+		}
+
+		return null;
+	}
+}
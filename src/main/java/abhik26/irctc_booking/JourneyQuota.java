@@ -0,0 +1,17 @@
+package abhik26.irctc_booking;
+
+public enum JourneyQuota {
+
+	TATKAL, GENERAL;
+
+	// null if the value is not a supported quota
+	public static JourneyQuota fromValue(String value) {
+		for (JourneyQuota journeyQuota : values()) {
+			if (journeyQuota.name().equalsIgnoreCase(value)) {
+				return journeyQuota;
+			}
+		}
+
+		return null;
+	}
+}
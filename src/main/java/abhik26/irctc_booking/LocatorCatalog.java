@@ -0,0 +1,289 @@
+package abhik26.irctc_booking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.json.Json;
+
+/*
+ * Locators of the flow by logical name, read from locators.properties (or the file set with the irctc.locators
+ * system property). Each name has an ordered list of candidate locators, which are all waited for at once, so a
+ * candidate broken by a site deploy costs nothing as long as another one still works. Every resolution records
+ * which candidates found the element and how long each took to evaluate in the page. Candidates that reliably
+ * find the element are tried first, the cheapest of them first, and the statistics are kept in
+ * <irctc.runs.dir>/locator-stats.json between runs.
+ */
+public class LocatorCatalog {
+
+	private static final String CANDIDATE_SEPARATOR = " || ";
+
+	// samples before a candidate is judged, and the share of them in which it must find the element
+	private static final int MIN_SAMPLES = 3;
+	private static final double MIN_MATCH_RATE = 0.8;
+
+	// older samples are halved beyond this, so that a candidate broken by a deploy is demoted within a few runs
+	private static final int MAX_SAMPLES = 20;
+
+	private final Map<String, List<Candidate>> locators = new LinkedHashMap<>();
+	private final Path statsFile;
+
+	private LocatorCatalog(Properties catalog, Path statsFile, Map<String, Object> stats) {
+		this.statsFile = statsFile;
+
+		for (String name : catalog.stringPropertyNames()) {
+			List<Candidate> candidates = new ArrayList<>();
+
+			for (String value : catalog.getProperty(name).split(" \\|\\| ")) {
+				if (!value.trim().isEmpty()) {
+					candidates.add(new Candidate(name, value.trim(), candidates.size(), stats));
+				}
+			}
+
+			if (candidates.isEmpty()) {
+				throw new RuntimeException("No locator candidate for: " + name);
+			}
+
+			locators.put(name, candidates);
+			promote(name);
+		}
+	}
+
+	public static LocatorCatalog load() {
+		Properties catalog = new Properties();
+		String catalogFile = System.getProperty("irctc.locators");
+
+		try (InputStream is = catalogFile != null ? Files.newInputStream(Paths.get(catalogFile))
+				: LocatorCatalog.class.getClassLoader().getResourceAsStream("locators.properties")) {
+			if (is == null) {
+				throw new RuntimeException("locators.properties not found in the classpath.");
+			}
+
+			catalog.load(is);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read the locator catalog: " + e.getMessage(), e);
+		}
+
+		Path statsFile = Paths.get(System.getProperty("irctc.runs.dir", "runs"), "locator-stats.json");
+		Map<String, Object> stats = new HashMap<>();
+
+		if (Files.exists(statsFile)) {
+			try {
+				stats = new Json().toType(new String(Files.readAllBytes(statsFile), StandardCharsets.UTF_8),
+						Map.class);
+			} catch (Exception e) {
+				BookingLog.info("Unable to read " + statsFile + ", locator statistics are started over: " + e);
+			}
+		}
+
+		return new LocatorCatalog(catalog, statsFile, stats);
+	}
+
+	public WebElement find(PageWaiter waiter, String name) {
+		return find(waiter, null, name, null);
+	}
+
+	public WebElement find(PageWaiter waiter, WebElement scope, String name) {
+		return find(waiter, scope, name, null);
+	}
+
+	// Waits for the element like PageWaiter.find, with the default timeout of the waiter if none is given.
+	public WebElement find(PageWaiter waiter, WebElement scope, String name, Duration timeout) {
+		WebElement element = resolve(waiter, scope, name, timeout);
+
+		if (element == null) {
+			throw new NoSuchElementException("Element not found within " + timeout(waiter, timeout).getSeconds()
+					+ " seconds: " + name + " " + locators.get(name));
+		}
+
+		return element;
+	}
+
+	// The element if any candidate finds it right away, null otherwise.
+	public WebElement findNow(PageWaiter waiter, String name) {
+		return resolve(waiter, null, name, Duration.ZERO);
+	}
+
+	private WebElement resolve(PageWaiter waiter, WebElement scope, String name, Duration timeout) {
+		List<Candidate> candidates = locators.get(name);
+
+		if (candidates == null) {
+			throw new RuntimeException("Unknown locator: " + name);
+		}
+
+		PageWaiter.Condition[] conditions = new PageWaiter.Condition[candidates.size()];
+
+		for (int i = 0; i < candidates.size(); i++) {
+			conditions[i] = PageWaiter.present(candidates.get(i).by);
+		}
+
+		PageWaiter.Result result = waiter.probeFirst(scope, timeout(waiter, timeout), conditions);
+
+		// a candidate is only judged once the element was found, so that a page which is slow to load does not
+		// count against any of them
+		if (result != null) {
+			for (int i = 0; i < candidates.size(); i++) {
+				candidates.get(i).record(result.isProbeMatched(i), result.getProbeMicros(i));
+			}
+
+			promote(name);
+		}
+
+		return result == null ? null : result.getElement();
+	}
+
+	private static Duration timeout(PageWaiter waiter, Duration timeout) {
+		return timeout != null ? timeout : waiter.getDefaultTimeout();
+	}
+
+	/*
+	 * Reliable candidates first, the cheapest of them first, then the ones without enough samples and the
+	 * unreliable ones last, each in catalog order.
+	 */
+	private void promote(String name) {
+		List<Candidate> candidates = locators.get(name);
+		Candidate first = candidates.get(0);
+
+		candidates.sort(Comparator.comparingInt(Candidate::rank)
+				.thenComparingDouble(candidate -> candidate.rank() == 0 ? candidate.averageMicros() : 0)
+				.thenComparingInt(candidate -> candidate.catalogIndex));
+
+		if (candidates.get(0) != first) {
+			BookingLog.info("Locator " + name + " now tried first with: " + candidates.get(0).value);
+		}
+	}
+
+	// Writes the statistics of every candidate on the log thread.
+	public void save() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+
+		for (List<Candidate> candidates : locators.values()) {
+			for (Candidate candidate : candidates) {
+				stats.put(candidate.key, candidate.toStats());
+			}
+		}
+
+		BookingLog.submit(() -> {
+			try {
+				Files.createDirectories(statsFile.toAbsolutePath().getParent());
+
+				try (Writer writer = Files.newBufferedWriter(statsFile, StandardCharsets.UTF_8)) {
+					writer.write(new Json().toJson(stats));
+				}
+			} catch (Exception e) {
+				System.err.println("Unable to write locator statistics: " + e);
+			}
+		});
+	}
+
+	private static class Candidate {
+
+		private final String key;
+		private final String value;
+		private final By by;
+		private final int catalogIndex;
+		private long matches;
+		private long misses;
+		private double totalMicros;
+
+		private Candidate(String name, String value, int catalogIndex, Map<String, Object> stats) {
+			this.key = name + CANDIDATE_SEPARATOR + value;
+			this.value = value;
+			this.by = toBy(name, value);
+			this.catalogIndex = catalogIndex;
+
+			if (stats.get(key) instanceof Map) {
+				Map<?, ?> candidateStats = (Map<?, ?>) stats.get(key);
+				matches = number(candidateStats.get("matches")).longValue();
+				misses = number(candidateStats.get("misses")).longValue();
+				totalMicros = number(candidateStats.get("totalMicros")).doubleValue();
+			}
+		}
+
+		private static Number number(Object value) {
+			return value instanceof Number ? (Number) value : 0;
+		}
+
+		private static By toBy(String name, String value) {
+			int separator = value.indexOf(':');
+			String locator = separator < 0 ? "" : value.substring(separator + 1).trim();
+
+			switch (separator < 0 ? "" : value.substring(0, separator).trim()) {
+				case "css":
+					return By.cssSelector(locator);
+				case "xpath":
+					return By.xpath(locator);
+				case "id":
+					return By.id(locator);
+				case "tag":
+					return By.tagName(locator);
+				default:
+					throw new RuntimeException("Invalid locator candidate of " + name + " (expected css:, xpath:, "
+							+ "id: or tag:): " + value);
+			}
+		}
+
+		private void record(boolean matched, double micros) {
+			if (matched) {
+				matches++;
+			} else {
+				misses++;
+			}
+
+			if (micros >= 0) {
+				totalMicros += micros;
+			}
+
+			if (matches + misses > MAX_SAMPLES) {
+				matches /= 2;
+				misses /= 2;
+				totalMicros /= 2;
+			}
+		}
+
+		// 0: reliable, 1: not enough samples, 2: unreliable
+		private int rank() {
+			long samples = matches + misses;
+
+			if (samples < MIN_SAMPLES) {
+				return 1;
+			}
+
+			return matches >= samples * MIN_MATCH_RATE ? 0 : 2;
+		}
+
+		private double averageMicros() {
+			long samples = matches + misses;
+			return samples == 0 ? 0 : totalMicros / samples;
+		}
+
+		private Map<String, Object> toStats() {
+			Map<String, Object> stats = new LinkedHashMap<>();
+			stats.put("matches", matches);
+			stats.put("misses", misses);
+			stats.put("totalMicros", totalMicros);
+			stats.put("averageMicros", averageMicros());
+			return stats;
+		}
+
+		@Override
+		public String toString() {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package abhik26.irctc_booking;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/*
+ * Event driven wait engine. A single asynchronous script checks the given conditions in order and, if none of
+ * them holds yet, re-checks them on every DOM mutation (MutationObserver) until one holds or the timeout
+ * expires. Waiting for "optional dialog or next page, whichever comes first" therefore costs nothing extra
+ * when the dialog does not appear, and required elements can be waited for with the implicit wait at zero.
+ */
+public class PageWaiter {
+
+	private static final String AWAIT_FIRST_SCRIPT = ""
+			+ "var conditions = arguments[0], scope = arguments[1] || document, timeout = arguments[2];"
+			+ "var probe = arguments[3];"
+			+ "var done = arguments[arguments.length - 1], finished = false, observer = null, timer = null;"
+			+ "function locate(condition) {"
+			+ "  var element = condition.using === 'xpath'"
+			+ "    ? document.evaluate(condition.value, scope, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null)"
+			+ "        .singleNodeValue"
+			+ "    : scope.querySelector(condition.value);"
+			+ "  if (element && condition.visible"
+			+ "      && !(element.offsetWidth || element.offsetHeight || element.getClientRects().length)) {"
+			+ "    return null;"
+			+ "  }"
+			+ "  return element;"
+			+ "}"
+			+ "function finish(index, element) {"
+			+ "  if (finished) { return; }"
+			+ "  finished = true;"
+			+ "  if (observer) { observer.disconnect(); }"
+			+ "  clearTimeout(timer);"
+			+ "  if (index >= 0 && conditions[index].click) { element.click(); }"
+			+ "  var probes = [];"
+			+ "  for (var i = 0; probe && index >= 0 && i < conditions.length; i++) {"
+			+ "    var start = performance.now(), matched = locate(conditions[i]) === element;"
+			+ "    probes.push({ matched: matched, micros: (performance.now() - start) * 1000 });"
+			+ "  }"
+			+ "  done(index >= 0 ? { index: index, element: element, probes: probes } : null);"
+			+ "}"
+			+ "function check() {"
+			+ "  for (var i = 0; i < conditions.length; i++) {"
+			+ "    var element = locate(conditions[i]);"
+			+ "    if (element) { finish(i, element); return true; }"
+			+ "  }"
+			+ "  return false;"
+			+ "}"
+			+ "if (!check()) {"
+			+ "  observer = new MutationObserver(check);"
+			+ "  observer.observe(document, { childList: true, subtree: true, attributes: true,"
+			+ "    characterData: true });"
+			+ "  timer = setTimeout(function () { finish(-1); }, timeout);"
+			+ "}";
+
+	/*
+	 * Samples the page position and size of the element, the number of finished network requests and the
+	 * document ready state, and reports once none of them has changed for the quiet period.
+	 */
+	private static final String AWAIT_STABLE_SCRIPT = ""
+			+ "var element = arguments[0], quiet = arguments[1], timeout = arguments[2];"
+			+ "var done = arguments[arguments.length - 1], start = performance.now(), lastChange = start, last = null;"
+			+ "function snapshot() {"
+			+ "  var rect = element.getBoundingClientRect();"
+			+ "  return [rect.left + window.scrollX, rect.top + window.scrollY, rect.width, rect.height,"
+			+ "    performance.getEntriesByType('resource').length, document.readyState].join();"
+			+ "}"
+			+ "function sample() {"
+			+ "  var now = performance.now(), current;"
+			+ "  try { current = snapshot(); } catch (e) { done(false); return; }"
+			+ "  if (current !== last) { last = current; lastChange = now; }"
+			+ "  if (now - lastChange >= quiet && document.readyState === 'complete') { done(true); return; }"
+			+ "  if (now - start >= timeout) { done(false); return; }"
+			+ "  setTimeout(sample, 16);"
+			+ "}"
+			+ "sample();";
+
+	// Each script call is kept below the default W3C script timeout of 30 seconds, longer waits are chained.
+	private static final long MAX_SCRIPT_WAIT_MILLIS = 20000;
+
+	private final WebDriver driver;
+	private final Duration defaultTimeout;
+
+	public PageWaiter(WebDriver driver, Duration defaultTimeout) {
+		this.driver = driver;
+		this.defaultTimeout = defaultTimeout;
+	}
+
+	public Duration getDefaultTimeout() {
+		return defaultTimeout;
+	}
+
+	public static Condition present(By by) {
+		return new Condition(by, false, false);
+	}
+
+	public static Condition visible(By by) {
+		return new Condition(by, true, false);
+	}
+
+	// Visible element which is clicked in the same script as soon as it appears, e.g. a dialog button.
+	public static Condition clickWhenVisible(By by) {
+		return new Condition(by, true, true);
+	}
+
+	public WebElement find(By by) {
+		return find(null, by, defaultTimeout);
+	}
+
+	public WebElement find(By by, Duration timeout) {
+		return find(null, by, timeout);
+	}
+
+	public WebElement find(WebElement scope, By by) {
+		return find(scope, by, defaultTimeout);
+	}
+
+	public WebElement find(WebElement scope, By by, Duration timeout) {
+		Result result = awaitFirst(scope, timeout, present(by));
+
+		if (result == null) {
+			throw new NoSuchElementException("Element not found within " + timeout.getSeconds() + " seconds: " + by);
+		}
+
+		return result.getElement();
+	}
+
+	public Result awaitFirst(Duration timeout, Condition... conditions) {
+		return awaitFirst(null, timeout, conditions);
+	}
+
+	/*
+	 * Returns the first condition that holds, or null if none of them held within the timeout. Navigation to
+	 * another document while waiting restarts the wait on the new document.
+	 */
+	public Result awaitFirst(WebElement scope, Duration timeout, Condition... conditions) {
+		return awaitFirst(scope, timeout, false, conditions);
+	}
+
+	/*
+	 * As awaitFirst, and once a condition held, every condition is evaluated once more to tell whether it
+	 * finds the same element and how long the evaluation took, e.g. to compare alternative locators.
+	 */
+	public Result probeFirst(WebElement scope, Duration timeout, Condition... conditions) {
+		return awaitFirst(scope, timeout, true, conditions);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Result awaitFirst(WebElement scope, Duration timeout, boolean probe, Condition... conditions) {
+		List<Map<String, Object>> scriptConditions = new ArrayList<>();
+
+		for (Condition condition : conditions) {
+			scriptConditions.add(condition.toScriptArgument());
+		}
+
+		long deadline = System.nanoTime() + timeout.toNanos();
+
+		while (true) {
+			long remainingMillis = Math.max(0, (deadline - System.nanoTime()) / 1000000);
+
+			try {
+				Object value = ((JavascriptExecutor) driver).executeAsyncScript(AWAIT_FIRST_SCRIPT, scriptConditions,
+						scope, Math.min(remainingMillis, MAX_SCRIPT_WAIT_MILLIS), probe);
+
+				if (value instanceof Map) {
+					Map<?, ?> result = (Map<?, ?>) value;
+					return new Result(((Number) result.get("index")).intValue(), (WebElement) result.get("element"),
+							(List<Map<String, Object>>) result.get("probes"));
+				}
+			} catch (ScriptTimeoutException e) {
+				// chained below
+			} catch (JavascriptException e) {
+				if (e.getMessage() == null || !e.getMessage().contains("unloaded")) {
+					throw e;
+				}
+			}
+
+			if (System.nanoTime() >= deadline) {
+				return null;
+			}
+		}
+	}
+
+	/*
+	 * Waits until the layout around the element has stopped shifting (e.g. ads being inserted above it) for
+	 * the quiet period, but not longer than the timeout. Returns false if the page did not settle in time.
+	 */
+	public boolean awaitStable(WebElement element, Duration quietPeriod, Duration timeout) {
+		try {
+			return Boolean.TRUE.equals(((JavascriptExecutor) driver).executeAsyncScript(AWAIT_STABLE_SCRIPT, element,
+					quietPeriod.toMillis(), Math.min(timeout.toMillis(), MAX_SCRIPT_WAIT_MILLIS)));
+		} catch (ScriptTimeoutException e) {
+			return false;
+		}
+	}
+
+	public static class Condition {
+
+		private final By by;
+		private final boolean visible;
+		private final boolean click;
+
+		private Condition(By by, boolean visible, boolean click) {
+			if (!(by instanceof By.Remotable)) {
+				throw new IllegalArgumentException("Unsupported locator: " + by);
+			}
+
+			// a strategy the script cannot locate with fails here rather than on the first wait
+			By.Remotable.Parameters parameters = ((By.Remotable) by).getRemoteParameters();
+			toScriptLocator(parameters.using(), String.valueOf(parameters.value()));
+
+			this.by = by;
+			this.visible = visible;
+			this.click = click;
+		}
+
+		public By getBy() {
+			return by;
+		}
+
+		Map<String, Object> toScriptArgument() {
+			By.Remotable.Parameters parameters = ((By.Remotable) by).getRemoteParameters();
+			Map<String, Object> argument = new LinkedHashMap<>();
+			argument.put("using", isXPath(parameters.using()) ? "xpath" : "css");
+			argument.put("value", toScriptLocator(parameters.using(), String.valueOf(parameters.value())));
+			argument.put("visible", visible);
+			argument.put("click", click);
+			return argument;
+		}
+
+		// the link texts are located with XPath, matched against the text of the links as the driver does
+		private static boolean isXPath(String using) {
+			return "xpath".equals(using) || "link text".equals(using) || "partial link text".equals(using);
+		}
+
+		// The CSS selector or XPath expression the script locates the element with.
+		private static String toScriptLocator(String using, String value) {
+			switch (using) {
+				case "css selector":
+				case "tag name":
+				case "xpath":
+					return value;
+				case "id":
+					return "[id='" + value + "']";
+				case "name":
+					return "[name='" + value + "']";
+				case "class name":
+					return "." + value;
+				case "link text":
+					return ".//a[normalize-space(.) = " + xpathLiteral(value.trim()) + "]";
+				case "partial link text":
+					return ".//a[contains(normalize-space(.), " + xpathLiteral(value) + ")]";
+				default:
+					throw new IllegalArgumentException("Unsupported locator strategy: " + using);
+			}
+		}
+
+		// The text as an XPath string literal, which has no escapes for the quote it is delimited with.
+		private static String xpathLiteral(String text) {
+			if (!text.contains("'")) {
+				return "'" + text + "'";
+			} else if (!text.contains("\"")) {
+				return "\"" + text + "\"";
+			}
+
+			return "concat('" + text.replace("'", "', \"'\", '") + "')";
+		}
+	}
+
+	public static class Result {
+
+		private final int index;
+		private final WebElement element;
+		private final List<Map<String, Object>> probes;
+
+		Result(int index, WebElement element, List<Map<String, Object>> probes) {
+			this.index = index;
+			this.element = element;
+			this.probes = probes == null ? new ArrayList<>() : probes;
+		}
+
+		// Index of the condition that held, in the order the conditions were given.
+		public int getIndex() {
+			return index;
+		}
+
+		public WebElement getElement() {
+			return element;
+		}
+
+		// Whether the condition finds the same element, only known for probeFirst results.
+		public boolean isProbeMatched(int conditionIndex) {
+			return conditionIndex < probes.size() && Boolean.TRUE.equals(probes.get(conditionIndex).get("matched"));
+		}
+
+		// Time the condition took to evaluate in the page, only known for probeFirst results (else -1).
+		public double getProbeMicros(int conditionIndex) {
+			return conditionIndex < probes.size() ? ((Number) probes.get(conditionIndex).get("micros")).doubleValue()
+					: -1;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package abhik26.irctc_booking;
+
+public final class Passenger {
+
+	private final String name;
+	private final int age;
+	private final Gender gender;
+	private final BerthPreference berthPreference;
+
+	// berthPreference can be null for no preference
+	public Passenger(String name, int age, Gender gender, BerthPreference berthPreference) {
+		this.name = name;
+		this.age = age;
+		this.gender = gender;
+		this.berthPreference = berthPreference;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getAge() {
+		return age;
+	}
+
+	public Gender getGender() {
+		return gender;
+	}
+
+	public BerthPreference getBerthPreference() {
+		return berthPreference;
+	}
+}
@@ -0,0 +1,117 @@
+package abhik26.irctc_booking;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+/*
+ * Fills the passenger forms of all passengers in a single asynchronous script: the 'Add Passenger' link is
+ * clicked until there is a form for every passenger, every field is set through the native value setter
+ * followed by the input/change/blur events the Angular value accessors listen to, and the result is read
+ * back in the same call. A field is only considered bound if it shows the expected value and Angular marks it, or
+ * the form control element around it, as dirty, i.e. the form control has received the value and not just the DOM
+ * element.
+ */
+public class PassengerFormFiller {
+
+	private static final String FILL_SCRIPT = ""
+			+ "var passengers = arguments[0], foodPreference = arguments[1], timeout = arguments[2];"
+			+ "var done = arguments[arguments.length - 1], start = Date.now();"
+			+ "function forms() { return document.querySelectorAll('app-passenger'); }"
+			+ "function addPassengerLink() {"
+			+ "  return document.evaluate(\"//span[contains(text(), 'Add Passenger')]/parent::a\", document, null,"
+			+ "    XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;"
+			+ "}"
+			+ "function addForms() {"
+			+ "  if (forms().length >= passengers.length) { fill(); return; }"
+			+ "  if (Date.now() - start > timeout) { done('passenger forms not added in time'); return; }"
+			+ "  var link = addPassengerLink();"
+			+ "  if (!link) { done('Add Passenger link not found'); return; }"
+			+ "  var expected = forms().length + 1;"
+			+ "  link.click();"
+			+ "  (function awaitForm() {"
+			+ "    if (forms().length >= expected) { addForms(); }"
+			+ "    else if (Date.now() - start > timeout) { done('passenger form ' + expected + ' not added in time'); }"
+			+ "    else { setTimeout(awaitForm, 10); }"
+			+ "  })();"
+			+ "}"
+			+ "function setValue(element, value) {"
+			+ "  var prototype = element.tagName === 'SELECT' ? HTMLSelectElement.prototype : HTMLInputElement.prototype;"
+			+ "  Object.getOwnPropertyDescriptor(prototype, 'value').set.call(element, value);"
+			+ "  element.dispatchEvent(new Event('input', { bubbles: true }));"
+			+ "  element.dispatchEvent(new Event('change', { bubbles: true }));"
+			+ "  element.dispatchEvent(new Event('blur'));"
+			+ "}"
+			// an element without the Angular classes is not bound to a form control
+			+ "function dirty(element) { return !!element && element.classList.contains('ng-dirty'); }"
+			+ "function bound(element, value) {"
+			+ "  return element.value === value && (dirty(element) || dirty(element.closest('[formcontrolname]')));"
+			+ "}"
+			+ "function fill() {"
+			+ "  var all = forms(), failures = [];"
+			+ "  for (var i = 0; i < passengers.length; i++) {"
+			+ "    var passenger = passengers[i], fields = ["
+			+ "      [\"input[placeholder='Name']\", passenger.name, true],"
+			+ "      [\"input[placeholder='Age']\", passenger.age, true],"
+			+ "      [\"select[formcontrolname='passengerGender']\", passenger.gender, true],"
+			+ "      [\"select[formcontrolname='passengerBerthChoice']\", passenger.berth, !!passenger.berth],"
+			+ "      [\"select[formcontrolname='passengerFoodChoice']\", foodPreference, false]];"
+			+ "    for (var j = 0; j < fields.length; j++) {"
+			+ "      var element = all[i].querySelector(fields[j][0]), value = fields[j][1];"
+			+ "      if (!element || !value) {"
+			+ "        if (fields[j][2]) { failures.push('passenger' + (i + 1) + ' ' + fields[j][0] + ' not found'); }"
+			+ "        continue;"
+			+ "      }"
+			+ "      if (element.maxLength > 0 && value.length > element.maxLength) {"
+			+ "        value = value.substring(0, element.maxLength);"
+			+ "      }"
+			+ "      setValue(element, value);"
+			+ "      if (!bound(element, value)) {"
+			+ "        failures.push('passenger' + (i + 1) + ' ' + fields[j][0] + ' not bound');"
+			+ "      }"
+			+ "    }"
+			+ "  }"
+			+ "  done(failures.length ? failures.join(', ') : null);"
+			+ "}"
+			+ "addForms();";
+
+	private PassengerFormFiller() {
+	}
+
+	// Script argument of the passengers, built once with the booking plan.
+	static List<Map<String, Object>> scriptArgument(List<BookingPlan.PlannedPassenger> passengers) {
+		List<Map<String, Object>> scriptPassengers = new ArrayList<>();
+
+		for (BookingPlan.PlannedPassenger plannedPassenger : passengers) {
+			Map<String, Object> passenger = new LinkedHashMap<>();
+			passenger.put("name", plannedPassenger.getName());
+			passenger.put("age", plannedPassenger.getAge());
+			passenger.put("gender", plannedPassenger.getGender());
+			passenger.put("berth", plannedPassenger.getBerth() == null ? "" : plannedPassenger.getBerth());
+			scriptPassengers.add(Collections.unmodifiableMap(passenger));
+		}
+
+		return Collections.unmodifiableList(scriptPassengers);
+	}
+
+	/*
+	 * Returns null if every field of every passenger was filled and verified, otherwise the reason it was not,
+	 * in which case the form has to be filled field by field.
+	 */
+	public static String fill(WebDriver driver, BookingPlan plan, Duration timeout) {
+		try {
+			Object failure = ((JavascriptExecutor) driver).executeAsyncScript(FILL_SCRIPT,
+					plan.getPassengerFormArgument(), plan.getFoodPreference(), timeout.toMillis());
+			return failure == null ? null : failure.toString();
+		} catch (WebDriverException e) {
+			return e.getClass().getSimpleName() + ": " + String.valueOf(e.getMessage()).split("\n")[0];
+		}
+	}
+}
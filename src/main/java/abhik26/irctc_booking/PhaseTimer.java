@@ -0,0 +1,443 @@
+package abhik26.irctc_booking;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.openqa.selenium.json.Json;
+
+/*
+ * Records the duration of consecutive named phases of a booking run and the WebDriver commands issued in
+ * each of them, using the monotonic clock. Each call to mark() closes the phase running since the previous
+ * mark (or reset). Phases and commands are also emitted as JFR events, and everything else (console lines,
+ * the per-run summary file) is handed over to the BookingLog thread.
+ */
+public class PhaseTimer {
+
+	private static final DateTimeFormatter summaryFileDateTimeFormatter = DateTimeFormatter
+			.ofPattern("uuuuMMdd-HHmmss");
+
+	private final boolean printing;
+	private final Map<String, Long> phaseDurations = new LinkedHashMap<>();
+	private final List<CommandTiming> commandTimings = new ArrayList<>();
+	private final List<Map<String, Object>> stabilityWaits = new ArrayList<>();
+	private Map<String, Object> tatkalSchedule = null;
+	private Map<String, Object> trainChoice = null;
+	private final List<Map<String, Object>> recoveries = new ArrayList<>();
+	private Map<String, Object> dialogWatchdog = null;
+	private Map<String, Object> elementCache = null;
+	private Map<String, Object> diagnostics = null;
+	private final Map<String, Object> stepTimeouts = new LinkedHashMap<>();
+	private Map<String, Object> warmup = null;
+	private List<Map<String, Object>> resources = null;
+	private Map<String, Object> backgroundCommands = null;
+
+	private ZonedDateTime startedAt = ZonedDateTime.now();
+	private long runStartNanos = System.nanoTime();
+	private long phaseStartNanos = runStartNanos;
+	private int phaseFirstCommand = 0;
+	private BookingEvents.PhaseEvent phaseEvent = new BookingEvents.PhaseEvent();
+
+	public PhaseTimer() {
+		this(true);
+	}
+
+	// A timer that prints nothing to the console, e.g. for thousands of simulated runs.
+	public PhaseTimer(boolean printing) {
+		this.printing = printing;
+	}
+
+	// false for a quiet timer, the flow then logs nothing to the console either
+	public boolean isPrinting() {
+		return printing;
+	}
+
+	public synchronized void reset() {
+		phaseDurations.clear();
+		commandTimings.clear();
+		stabilityWaits.clear();
+		tatkalSchedule = null;
+		trainChoice = null;
+		recoveries.clear();
+		dialogWatchdog = null;
+		elementCache = null;
+		diagnostics = null;
+		stepTimeouts.clear();
+		warmup = null;
+		resources = null;
+		backgroundCommands = null;
+		startedAt = ZonedDateTime.now();
+		runStartNanos = System.nanoTime();
+		phaseStartNanos = runStartNanos;
+		phaseFirstCommand = 0;
+		phaseEvent = new BookingEvents.PhaseEvent();
+		phaseEvent.begin();
+	}
+
+	public synchronized void mark(String phase) {
+		long now = System.nanoTime();
+		long duration = now - phaseStartNanos;
+		long offset = phaseStartNanos - runStartNanos;
+		int commands = commandTimings.size() - phaseFirstCommand;
+
+		phaseDurations.merge(phase, duration, Long::sum);
+		BookingMetrics.phaseCompleted(phase, duration);
+
+		for (int i = phaseFirstCommand; i < commandTimings.size(); i++) {
+			commandTimings.get(i).phase = phase;
+		}
+
+		phaseEvent.phase = phase;
+		phaseEvent.commit();
+		phaseEvent = new BookingEvents.PhaseEvent();
+		phaseEvent.begin();
+
+		phaseStartNanos = now;
+		phaseFirstCommand = commandTimings.size();
+
+		print(() -> String.format("[%10.1f ms] %-26s %10.1f ms, %d driver commands", offset / 1e6, phase,
+				duration / 1e6, commands));
+	}
+
+	synchronized void recordCommand(String command, String target, long startNanos, long endNanos, boolean failed) {
+		commandTimings.add(new CommandTiming(command, target, startNanos - runStartNanos, endNanos - startNanos,
+				failed));
+	}
+
+	/*
+	 * Records how long a page-stability wait took compared to the fixed sleep it replaces, so that the time
+	 * saved shows up in the run summary.
+	 */
+	public void recordStabilityWait(String name, long waitNanos, boolean stable, Duration replacedSleep) {
+		Map<String, Object> stabilityWait = new LinkedHashMap<>();
+		stabilityWait.put("name", name);
+		stabilityWait.put("waitMillis", waitNanos / 1e6);
+		stabilityWait.put("stable", stable);
+		stabilityWait.put("replacedSleepMillis", replacedSleep.toMillis());
+		stabilityWait.put("savedMillis", replacedSleep.toMillis() - waitNanos / 1e6);
+
+		synchronized (this) {
+			stabilityWaits.add(stabilityWait);
+		}
+
+		print(() -> String.format("%-28s %10.1f ms (%s, fixed sleep was %d ms)", "  stable: " + name,
+				waitNanos / 1e6, stable ? "settled" : "timed out", replacedSleep.toMillis()));
+	}
+
+	/*
+	 * Records the booking server clock estimate and how close to the target the train class click was fired,
+	 * both on the server clock, to tune the tatkal safety margin.
+	 */
+	public void recordTatkalSchedule(ServerClock serverClock, long targetServerMillis, double firedAtServerMillis,
+			long safetyMarginMillis) {
+		Map<String, Object> schedule = new LinkedHashMap<>();
+		schedule.put("offsetMillis", serverClock.getOffsetMillis());
+		schedule.put("offsetUncertaintyMillis", serverClock.getUncertaintyMillis());
+		schedule.put("samples", serverClock.getSampleCount());
+		schedule.put("roundTripMillis", serverClock.getMinRoundTripMillis());
+		schedule.put("roundTripJitterMillis", serverClock.getRoundTripJitterMillis());
+		schedule.put("safetyMarginMillis", safetyMarginMillis);
+		schedule.put("targetServerTime", Instant.ofEpochMilli(targetServerMillis).toString());
+		schedule.put("firedAtServerTime", Instant.ofEpochMilli((long) firedAtServerMillis).toString());
+		schedule.put("fireDelayMillis", firedAtServerMillis - targetServerMillis);
+
+		synchronized (this) {
+			tatkalSchedule = schedule;
+		}
+
+		print(() -> String.format("Tatkal click fired %.3f ms after %s (server clock %s, safety margin %d ms)",
+				firedAtServerMillis - targetServerMillis, Instant.ofEpochMilli(targetServerMillis), serverClock,
+				safetyMarginMillis));
+	}
+
+	/*
+	 * Records which of the train and class choices was booked (rank 1 is the requested one), why the choices
+	 * before it were passed over and how long the selection took from the first class click.
+	 */
+	public void recordTrainChoice(String choice, int rank, List<String> rejectedChoices, long selectionNanos) {
+		Map<String, Object> selection = new LinkedHashMap<>();
+		selection.put("choice", choice);
+		selection.put("rank", rank);
+		selection.put("rejected", new ArrayList<>(rejectedChoices));
+		selection.put("selectionMillis", selectionNanos / 1e6);
+
+		synchronized (this) {
+			trainChoice = selection;
+		}
+
+		print(() -> String.format("Train choice %d (%s) selected in %.1f ms%s", rank, choice,
+				selectionNanos / 1e6, rejectedChoices.isEmpty() ? "" : ", passed over: " + rejectedChoices));
+	}
+
+	/*
+	 * Records a booking step that failed and was resumed: the exception it failed with, how many times it was
+	 * run and the time from the first failure until the step was completed.
+	 */
+	public void recordRecovery(String state, String failure, int attempts, long recoveryNanos) {
+		Map<String, Object> recovery = new LinkedHashMap<>();
+		recovery.put("state", state);
+		recovery.put("failure", failure);
+		recovery.put("attempts", attempts);
+		recovery.put("recoveryMillis", recoveryNanos / 1e6);
+
+		synchronized (this) {
+			recoveries.add(recovery);
+		}
+
+		print(() -> String.format("Step to %s recovered after %s in %.1f ms (%d attempts)", state, failure,
+				recoveryNanos / 1e6, attempts));
+	}
+
+	// Dialogs dismissed by the dialog watchdog during the run, with its poll counters.
+	public synchronized void recordDialogWatchdog(Map<String, Object> summary) {
+		dialogWatchdog = summary;
+	}
+
+	// Hits, misses and re-resolutions of the element handles of the run.
+	public synchronized void recordElementCache(Map<String, Object> statistics) {
+		elementCache = statistics;
+	}
+
+	// Steps captured by the diagnostics recorder and what capturing them cost.
+	public synchronized void recordDiagnostics(Map<String, Object> summary) {
+		diagnostics = summary;
+	}
+
+	// Driver commands sent before the tatkal trigger, with their cold and warm latency.
+	public synchronized void recordWarmup(Map<String, Object> summary) {
+		warmup = summary;
+	}
+
+	// Commands of the background threads on the session and the flow commands they held up.
+	public synchronized void recordBackgroundCommands(Map<String, Object> summary) {
+		backgroundCommands = summary;
+	}
+
+	// Requests blocked and loaded per page by the resource filter.
+	public synchronized void recordResources(List<Map<String, Object>> pages) {
+		resources = pages;
+	}
+
+	// Timeout a step was waited for with, derived from the step history or the default.
+	public synchronized void recordStepTimeout(String step, Duration timeout, Duration defaultTimeout) {
+		Map<String, Object> stepTimeout = new LinkedHashMap<>();
+		stepTimeout.put("timeoutMillis", timeout.toMillis());
+		stepTimeout.put("defaultMillis", defaultTimeout.toMillis());
+		stepTimeouts.put(step, stepTimeout);
+	}
+
+	public synchronized ZonedDateTime getStartedAt() {
+		return startedAt;
+	}
+
+	// Phase durations in nanoseconds, in the order the phases were completed.
+	public synchronized Map<String, Long> getPhaseDurations() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(phaseDurations));
+	}
+
+	public synchronized List<CommandTiming> getCommandTimings() {
+		return Collections.unmodifiableList(new ArrayList<>(commandTimings));
+	}
+
+	// System.nanoTime() at the start of the run, the command offsets are relative to it
+	synchronized long getRunStartNanos() {
+		return runStartNanos;
+	}
+
+	// Commands recorded from the index on, in the order they were sent.
+	synchronized List<CommandTiming> getCommandTimingsSince(int index) {
+		return new ArrayList<>(commandTimings.subList(Math.min(index, commandTimings.size()), commandTimings.size()));
+	}
+
+	// Number of commands recorded so far, the index of the next one.
+	synchronized int getCommandCount() {
+		return commandTimings.size();
+	}
+
+	// Drops the commands recorded from the index on, e.g. those of the driver warm-up, which are not of the flow.
+	synchronized void discardCommandsSince(int index) {
+		if (index < commandTimings.size()) {
+			commandTimings.subList(index, commandTimings.size()).clear();
+		}
+
+		phaseFirstCommand = Math.min(phaseFirstCommand, commandTimings.size());
+	}
+
+	/*
+	 * Writes the summary of the current run to <irctc.runs.dir>/booking-run-<timestamp>.json (default
+	 * directory: runs) on the log thread.
+	 */
+	public void writeSummary(boolean completed) {
+		final ZonedDateTime runStartedAt;
+		final Map<String, Long> phases = getPhaseDurations();
+		final List<CommandTiming> commands = getCommandTimings();
+		final List<Map<String, Object>> stability;
+		final Map<String, Object> schedule;
+		final Map<String, Object> choice;
+		final List<Map<String, Object>> recovered;
+		final Map<String, Object> dialogs;
+		final Map<String, Object> elements;
+		final Map<String, Object> capturedSteps;
+		final Map<String, Object> timeouts;
+		final Map<String, Object> warmedUp;
+		final List<Map<String, Object>> pages;
+		final Map<String, Object> background;
+
+		synchronized (this) {
+			runStartedAt = startedAt;
+			stability = new ArrayList<>(stabilityWaits);
+			schedule = tatkalSchedule;
+			choice = trainChoice;
+			recovered = new ArrayList<>(recoveries);
+			dialogs = dialogWatchdog;
+			elements = elementCache;
+			capturedSteps = diagnostics;
+			timeouts = new LinkedHashMap<>(stepTimeouts);
+			warmedUp = warmup;
+			pages = resources;
+			background = backgroundCommands;
+		}
+
+		BookingLog.submit(() -> {
+			Path directory = Paths.get(System.getProperty("irctc.runs.dir", "runs"));
+			Path file = directory.resolve("booking-run-" + runStartedAt.format(summaryFileDateTimeFormatter)
+					+ ".json");
+
+			try {
+				Files.createDirectories(directory);
+
+				try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+					writer.write(new Json().toJson(summary(runStartedAt, completed, phases, commands, stability,
+							schedule, choice, recovered, dialogs, elements, capturedSteps, timeouts, warmedUp,
+							pages, background)));
+				}
+
+				System.out.println("Run summary written to: " + file.toAbsolutePath());
+			} catch (Exception e) {
+				System.err.println("Unable to write run summary: " + e);
+			}
+		});
+	}
+
+	private static Map<String, Object> summary(ZonedDateTime startedAt, boolean completed, Map<String, Long> phases,
+			List<CommandTiming> commands, List<Map<String, Object>> stabilityWaits, Map<String, Object> tatkalSchedule,
+			Map<String, Object> trainChoice, List<Map<String, Object>> recoveries, Map<String, Object> dialogWatchdog,
+			Map<String, Object> elementCache, Map<String, Object> diagnostics, Map<String, Object> stepTimeouts,
+			Map<String, Object> warmup, List<Map<String, Object>> resources,
+			Map<String, Object> backgroundCommands) {
+		List<Map<String, Object>> phaseSummaries = new ArrayList<>();
+
+		for (Map.Entry<String, Long> phase : phases.entrySet()) {
+			int count = 0;
+			long commandNanos = 0;
+
+			for (CommandTiming command : commands) {
+				if (phase.getKey().equals(command.phase)) {
+					count++;
+					commandNanos += command.durationNanos;
+				}
+			}
+
+			Map<String, Object> phaseSummary = new LinkedHashMap<>();
+			phaseSummary.put("phase", phase.getKey());
+			phaseSummary.put("durationMillis", phase.getValue() / 1e6);
+			phaseSummary.put("driverCommands", count);
+			phaseSummary.put("driverCommandMillis", commandNanos / 1e6);
+			phaseSummaries.add(phaseSummary);
+		}
+
+		Map<String, Map<String, Object>> commandSummaries = new LinkedHashMap<>();
+		List<Map<String, Object>> commandDetails = new ArrayList<>();
+
+		for (CommandTiming command : commands) {
+			Map<String, Object> commandSummary = commandSummaries.computeIfAbsent(command.command, key -> {
+				Map<String, Object> value = new LinkedHashMap<>();
+				value.put("count", 0);
+				value.put("totalMillis", 0.0);
+				value.put("maxMillis", 0.0);
+				return value;
+			});
+			commandSummary.put("count", (Integer) commandSummary.get("count") + 1);
+			commandSummary.put("totalMillis", (Double) commandSummary.get("totalMillis") + command.durationNanos / 1e6);
+			commandSummary.put("maxMillis", Math.max((Double) commandSummary.get("maxMillis"),
+					command.durationNanos / 1e6));
+
+			Map<String, Object> commandDetail = new LinkedHashMap<>();
+			commandDetail.put("offsetMillis", command.offsetNanos / 1e6);
+			commandDetail.put("durationMillis", command.durationNanos / 1e6);
+			commandDetail.put("command", command.command);
+			commandDetail.put("target", command.target);
+			commandDetail.put("phase", command.phase);
+			commandDetail.put("failed", command.failed);
+			commandDetails.add(commandDetail);
+		}
+
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("startedAt", startedAt.toString());
+		summary.put("completed", completed);
+		summary.put("phases", phaseSummaries);
+		summary.put("tatkalSchedule", tatkalSchedule);
+		summary.put("warmup", warmup);
+		summary.put("trainChoice", trainChoice);
+		summary.put("recoveries", recoveries);
+		summary.put("dialogWatchdog", dialogWatchdog);
+		summary.put("backgroundCommands", backgroundCommands);
+		summary.put("elementCache", elementCache);
+		summary.put("diagnostics", diagnostics);
+		summary.put("resources", resources);
+		summary.put("stepTimeouts", stepTimeouts);
+		summary.put("stabilityWaits", stabilityWaits);
+		summary.put("commandTypes", commandSummaries);
+		summary.put("commands", commandDetails);
+		return summary;
+	}
+
+	// The line is formatted and printed on the log thread.
+	private void print(Supplier<String> line) {
+		if (printing) {
+			BookingLog.submit(() -> System.out.println(line.get()));
+		}
+	}
+
+	public static class CommandTiming {
+
+		final String command;
+		final String target;
+		final long offsetNanos;
+		final long durationNanos;
+		final boolean failed;
+		String phase;
+
+		CommandTiming(String command, String target, long offsetNanos, long durationNanos, boolean failed) {
+			this.command = command;
+			this.target = target;
+			this.offsetNanos = offsetNanos;
+			this.durationNanos = durationNanos;
+			this.failed = failed;
+		}
+
+		public String getCommand() {
+			return command;
+		}
+
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		public String getPhase() {
+			return phase;
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package abhik26.irctc_booking;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+
+/*
+ * Blocks requests the booking flow does not need (ads, analytics and optionally images and fonts) through the
+ * DevTools network domain of Chromium based browsers, and counts per page how many requests were blocked and
+ * how many bytes were transferred. The raw CDP methods are used instead of the versioned domain classes, so
+ * the filter does not depend on the browser version matching the devtools artifacts of Selenium.
+ *
+ * Configured with system properties:
+ *   irctc.block.ads     block ad and analytics hosts (default true)
+ *   irctc.block.images  block image files, the captcha is an inline image and is not affected (default false)
+ *   irctc.block.fonts   block web fonts (default false)
+ *   irctc.block.urls    additional comma separated url patterns, '*' is a wildcard
+ */
+public class ResourceFilter {
+
+	private static final List<String> AD_PATTERNS = Arrays.asList("*doubleclick.net*", "*googlesyndication.com*",
+			"*googleadservices.com*", "*adservice.google.*", "*googletagservices.com*", "*googletagmanager.com*",
+			"*google-analytics.com*", "*amazon-adsystem.com*", "*facebook.net*", "*criteo.*", "*taboola.com*",
+			"*outbrain.com*", "*hotjar.com*", "*clarity.ms*");
+	private static final List<String> IMAGE_PATTERNS = Arrays.asList("*.png*", "*.jpg*", "*.jpeg*", "*.gif*",
+			"*.webp*", "*.svg*", "*.ico*");
+	private static final List<String> FONT_PATTERNS = Arrays.asList("*.woff*", "*.woff2*", "*.ttf*", "*.otf*",
+			"*.eot*");
+
+	// the filter installed on each driver, so that its statistics can be read where the driver is used
+	private static final Map<WebDriver, ResourceFilter> installedFilters = Collections
+			.synchronizedMap(new WeakHashMap<>());
+
+	private final List<String> blockedPatterns;
+	private final Map<String, String> requestPages = new ConcurrentHashMap<>();
+	private final Map<String, PageStats> pageStats = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	private volatile String mainFrameId = null;
+	private volatile String currentPage = "about:blank";
+
+	public ResourceFilter(List<String> blockedPatterns) {
+		this.blockedPatterns = new ArrayList<>(blockedPatterns);
+	}
+
+	// Filter configured by the irctc.block.* system properties, null if nothing is to be blocked.
+	public static ResourceFilter fromSystemProperties() {
+		List<String> patterns = new ArrayList<>();
+
+		if (Boolean.parseBoolean(System.getProperty("irctc.block.ads", "true"))) {
+			patterns.addAll(AD_PATTERNS);
+		}
+
+		if (Boolean.parseBoolean(System.getProperty("irctc.block.images", "false"))) {
+			patterns.addAll(IMAGE_PATTERNS);
+		}
+
+		if (Boolean.parseBoolean(System.getProperty("irctc.block.fonts", "false"))) {
+			patterns.addAll(FONT_PATTERNS);
+		}
+
+		for (String pattern : System.getProperty("irctc.block.urls", "").split(",")) {
+			if (!pattern.trim().isEmpty()) {
+				patterns.add(pattern.trim());
+			}
+		}
+
+		return patterns.isEmpty() ? null : new ResourceFilter(patterns);
+	}
+
+	/*
+	 * Installs the filter on the driver. Returns false, leaving the driver unfiltered, if the browser does not
+	 * support DevTools or the session could not be set up.
+	 */
+	public boolean install(WebDriver driver) {
+		if (!(driver instanceof HasDevTools)) {
+			return false;
+		}
+
+		try {
+			DevTools devTools = ((HasDevTools) driver).getDevTools();
+			devTools.createSessionIfThereIsNotOne();
+
+			devTools.addListener(event("Network.requestWillBeSent"), this::onRequestWillBeSent);
+			devTools.addListener(event("Network.loadingFinished"), this::onLoadingFinished);
+			devTools.addListener(event("Network.loadingFailed"), this::onLoadingFailed);
+			devTools.addListener(event("Page.frameNavigated"), this::onFrameNavigated);
+			devTools.addListener(event("Page.navigatedWithinDocument"), this::onNavigatedWithinDocument);
+
+			devTools.send(command("Network.enable", Collections.emptyMap()));
+			devTools.send(command("Page.enable", Collections.emptyMap()));
+			devTools.send(command("Network.setBlockedURLs", Collections.singletonMap("urls", blockedPatterns)));
+			installedFilters.put(driver, this);
+			return true;
+		} catch (RuntimeException e) {
+			BookingLog.error("Unable to install the resource filter, resources are not blocked", e);
+			return false;
+		}
+	}
+
+	// The filter installed on the driver, null if none is.
+	public static ResourceFilter getInstalled(WebDriver driver) {
+		return installedFilters.get(driver);
+	}
+
+	// Blocked requests, loaded requests and transferred bytes per page, in the order the pages were visited.
+	public Map<String, PageStats> getPageStats() {
+		synchronized (pageStats) {
+			return new LinkedHashMap<>(pageStats);
+		}
+	}
+
+	// The statistics of every page, the last one included, for the run summary.
+	public List<Map<String, Object>> getSummary() {
+		List<Map<String, Object>> pages = new ArrayList<>();
+
+		for (Map.Entry<String, PageStats> page : getPageStats().entrySet()) {
+			Map<String, Object> summary = new LinkedHashMap<>();
+			summary.put("page", page.getKey());
+			summary.put("blockedRequests", page.getValue().getBlockedRequests());
+			summary.put("loadedRequests", page.getValue().getLoadedRequests());
+			summary.put("failedRequests", page.getValue().getFailedRequests());
+			summary.put("transferredBytes", page.getValue().getTransferredBytes());
+			pages.add(summary);
+		}
+
+		return pages;
+	}
+
+	private void onRequestWillBeSent(Map<String, Object> event) {
+		String page = currentPage;
+
+		// the request of a new main document belongs to the page it loads, not to the one being left
+		if ("Document".equals(event.get("type"))
+				&& (mainFrameId == null || String.valueOf(event.get("frameId")).equals(mainFrameId))) {
+			page = pagePath(String.valueOf(event.get("documentURL")));
+		}
+
+		requestPages.put(String.valueOf(event.get("requestId")), page);
+	}
+
+	private void onLoadingFinished(Map<String, Object> event) {
+		String page = requestPages.remove(String.valueOf(event.get("requestId")));
+		Object encodedDataLength = event.get("encodedDataLength");
+		PageStats stats = stats(page);
+
+		synchronized (stats) {
+			stats.loadedRequests++;
+			stats.transferredBytes += encodedDataLength instanceof Number ? ((Number) encodedDataLength).longValue()
+					: 0;
+		}
+	}
+
+	private void onLoadingFailed(Map<String, Object> event) {
+		String page = requestPages.remove(String.valueOf(event.get("requestId")));
+		PageStats stats = stats(page);
+
+		synchronized (stats) {
+			if (event.get("blockedReason") != null) {
+				stats.blockedRequests++;
+			} else {
+				stats.failedRequests++;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void onFrameNavigated(Map<String, Object> event) {
+		Map<String, Object> frame = (Map<String, Object>) event.get("frame");
+
+		if (frame != null && frame.get("parentId") == null) {
+			mainFrameId = String.valueOf(frame.get("id"));
+			changePage(String.valueOf(frame.get("url")));
+		}
+	}
+
+	private void onNavigatedWithinDocument(Map<String, Object> event) {
+		if (String.valueOf(event.get("frameId")).equals(mainFrameId)) {
+			changePage(String.valueOf(event.get("url")));
+		}
+	}
+
+	private void changePage(String url) {
+		String page = pagePath(url);
+		String previousPage = currentPage;
+
+		if (!page.equals(previousPage)) {
+			currentPage = page;
+			PageStats previousStats = getPageStats().get(previousPage);
+
+			if (previousStats != null) {
+				BookingLog.info("Resources of " + previousPage + ": " + previousStats);
+			}
+		}
+	}
+
+	// Pages are told apart by their path, query strings and fragments are left out.
+	private static String pagePath(String url) {
+		try {
+			URI uri = new URI(url);
+			return uri.getPath() == null || uri.getPath().isEmpty() ? url : uri.getPath();
+		} catch (Exception e) {
+			return url;
+		}
+	}
+
+	private PageStats stats(String page) {
+		return pageStats.computeIfAbsent(page == null ? currentPage : page, key -> new PageStats());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Event<Map<String, Object>> event(String method) {
+		return new Event<>(method, input -> input.read(Map.class));
+	}
+
+	private static Command<Void> command(String method, Map<String, ?> parameters) {
+		return new Command<>(method, new HashMap<>(parameters));
+	}
+
+	public static class PageStats {
+
+		private int blockedRequests;
+		private int loadedRequests;
+		private int failedRequests;
+		private long transferredBytes;
+
+		public synchronized int getBlockedRequests() {
+			return blockedRequests;
+		}
+
+		public synchronized int getLoadedRequests() {
+			return loadedRequests;
+		}
+
+		public synchronized int getFailedRequests() {
+			return failedRequests;
+		}
+
+		public synchronized long getTransferredBytes() {
+			return transferredBytes;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return String.format("%d requests blocked, %d loaded (%.1f KB transferred), %d failed", blockedRequests,
+					loadedRequests, transferredBytes / 1024.0, failedRequests);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package abhik26.irctc_booking;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Step latencies of the completed runs, appended to <irctc.runs.dir>/step-history.csv (one line per step:
+ * <run start epoch millis>,<step>,<micros>) and compacted to the latest MAX_SAMPLES of every step once the file
+ * has grown well past that. The timeout of a step is derived from its p99, so that a step which normally takes
+ * a few hundred milliseconds fails over to recovery within about a second instead of a minute. Run as a main
+ * class it prints the history with the timeouts derived from it.
+ */
+public class RunHistory {
+
+	private static final String FILE_NAME = "step-history.csv";
+
+	// samples kept per step, and the samples needed before the timeout of a step is derived from them
+	private static final int MAX_SAMPLES = 200;
+	private static final int MIN_SAMPLES = 20;
+
+	// the file is compacted once it holds this many lines per step on average
+	private static final int COMPACT_FACTOR = 3;
+
+	private static final double TIMEOUT_MARGIN = 3;
+	private static final Duration MIN_TIMEOUT = Duration.ofSeconds(1);
+
+	private final Path file;
+	private final Map<String, ArrayDeque<Sample>> samples = new TreeMap<>();
+	private int lines = 0;
+
+	private RunHistory(Path file) {
+		this.file = file;
+	}
+
+	public static RunHistory load() {
+		RunHistory history = new RunHistory(Paths.get(System.getProperty("irctc.runs.dir", "runs"), FILE_NAME));
+
+		if (Files.exists(history.file)) {
+			try (BufferedReader reader = Files.newBufferedReader(history.file, StandardCharsets.UTF_8)) {
+				String line;
+
+				while ((line = reader.readLine()) != null) {
+					// every line counts towards the compaction, the ones that cannot be read as well
+					history.lines++;
+					String[] values = line.split(",");
+
+					// lines cut by a crash while appending are skipped
+					if (values.length == 3) {
+						try {
+							history.add(Long.parseLong(values[0]), values[1], Long.parseLong(values[2]));
+						} catch (NumberFormatException e) {
+							// cut within a number, skipped as well
+						}
+					}
+				}
+			} catch (IOException e) {
+				BookingLog.info("Unable to read " + history.file + ", step timeouts are the defaults: " + e);
+			}
+		}
+
+		return history;
+	}
+
+	private void add(long runStartedAtMillis, String step, long micros) {
+		ArrayDeque<Sample> stepSamples = samples.computeIfAbsent(step, key -> new ArrayDeque<>());
+		stepSamples.addLast(new Sample(runStartedAtMillis, micros));
+
+		if (stepSamples.size() > MAX_SAMPLES) {
+			stepSamples.removeFirst();
+		}
+	}
+
+	/*
+	 * p99 of the step times TIMEOUT_MARGIN, not less than MIN_TIMEOUT and not more than the default, which is
+	 * also the timeout of a step without enough samples.
+	 */
+	public Duration timeout(String step, Duration defaultTimeout) {
+		long[] sorted = sortedSamples(step);
+
+		if (sorted.length < MIN_SAMPLES) {
+			return defaultTimeout;
+		}
+
+		Duration timeout = Duration.ofNanos((long) (percentile(sorted, 99) * 1000 * TIMEOUT_MARGIN));
+
+		if (timeout.compareTo(MIN_TIMEOUT) < 0) {
+			return MIN_TIMEOUT;
+		}
+
+		return timeout.compareTo(defaultTimeout) > 0 ? defaultTimeout : timeout;
+	}
+
+	private long[] sortedSamples(String step) {
+		ArrayDeque<Sample> stepSamples = samples.get(step);
+
+		if (stepSamples == null) {
+			return new long[0];
+		}
+
+		long[] sorted = stepSamples.stream().mapToLong(sample -> sample.micros).toArray();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	// Nearest-rank percentile of sorted samples.
+	static long percentile(long[] sorted, double percentile) {
+		int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+	}
+
+	// Appends the step durations (nanoseconds) of a completed run on the log thread, compacting the file if due.
+	public void append(long runStartedAtMillis, Map<String, Long> stepDurations) {
+		List<String> runLines = new ArrayList<>();
+
+		for (Map.Entry<String, Long> step : stepDurations.entrySet()) {
+			add(runStartedAtMillis, step.getKey(), step.getValue() / 1000);
+			runLines.add(runStartedAtMillis + "," + step.getKey() + "," + step.getValue() / 1000);
+		}
+
+		lines += runLines.size();
+		final boolean compact = lines > Math.max(samples.size(), 1) * MAX_SAMPLES * COMPACT_FACTOR;
+		final List<String> compactedLines = compact ? compactedLines() : null;
+
+		if (compact) {
+			lines = compactedLines.size();
+		}
+
+		BookingLog.submit(() -> {
+			try {
+				Files.createDirectories(file.toAbsolutePath().getParent());
+
+				if (compact) {
+					// written next to the file and moved over it, so that the history is never left half written
+					Path compactedFile = file.resolveSibling(FILE_NAME + ".tmp");
+					Files.write(compactedFile, compactedLines, StandardCharsets.UTF_8);
+					Files.move(compactedFile, file, StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				} else {
+					try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+							StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+						for (String line : runLines) {
+							writer.write(line);
+							writer.write('\n');
+						}
+					}
+				}
+			} catch (Exception e) {
+				System.err.println("Unable to write the step history: " + e);
+			}
+		});
+	}
+
+	// The samples kept in memory, each with the start of the run it was taken in.
+	private List<String> compactedLines() {
+		List<String> compacted = new ArrayList<>();
+
+		for (Map.Entry<String, ArrayDeque<Sample>> step : samples.entrySet()) {
+			for (Sample sample : step.getValue()) {
+				compacted.add(sample.runStartedAtMillis + "," + step.getKey() + "," + sample.micros);
+			}
+		}
+
+		return compacted;
+	}
+
+	public Map<String, Integer> getSampleCounts() {
+		Map<String, Integer> counts = new TreeMap<>();
+
+		for (Map.Entry<String, ArrayDeque<Sample>> step : samples.entrySet()) {
+			counts.put(step.getKey(), step.getValue().size());
+		}
+
+		return Collections.unmodifiableMap(counts);
+	}
+
+	// Prints the samples, percentiles and derived timeout of every step in the history.
+	public static void main(String[] args) {
+		RunHistory history = load();
+		Duration defaultTimeout = Duration.ofSeconds(60);
+
+		System.out.println("Step history: " + history.file.toAbsolutePath() + " (" + history.lines + " lines)");
+		System.out.println(String.format("%n%-34s %8s %10s %10s %10s %10s %12s", "step", "samples", "p50 (ms)",
+				"p90 (ms)", "p99 (ms)", "max (ms)", "timeout (s)"));
+
+		for (String step : history.samples.keySet()) {
+			long[] sorted = history.sortedSamples(step);
+			Duration timeout = history.timeout(step, defaultTimeout);
+
+			System.out.println(String.format("%-34s %8d %10.1f %10.1f %10.1f %10.1f %12s", step, sorted.length,
+					percentile(sorted, 50) / 1e3, percentile(sorted, 90) / 1e3, percentile(sorted, 99) / 1e3,
+					sorted[sorted.length - 1] / 1e3, sorted.length < MIN_SAMPLES ? "default"
+							: String.format("%.1f", timeout.toMillis() / 1e3)));
+		}
+	}
+
+	private static class Sample {
+
+		private final long runStartedAtMillis;
+		private final long micros;
+
+		private Sample(long runStartedAtMillis, long micros) {
+			this.runStartedAtMillis = runStartedAtMillis;
+			this.micros = micros;
+		}
+	}
+}
@@ -0,0 +1,922 @@
+package abhik26.irctc_booking;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.imageio.ImageIO;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.Actions;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+/*
+ * The booking steps run in a browser. Every command sent to the driver is timed and attributed to the current
+ * phase of the phase timer. The train list and the availability are read from the responses where the browser
+ * allows it, and dialogs are dismissed in the background, on the undecorated driver so that its polls are not
+ * timed as phases.
+ */
+public class SeleniumBookingSite implements BookingSite {
+
+	private static final ZoneId indiaZoneId = ZoneId.of("Asia/Kolkata");
+
+	// Values are in seconds
+	private static final int defaultElementWaitTime = 60;
+	private static final int defaultExplicitWaitTime = 60;
+	private static final int alertDisplayTime = 1;
+	private static final int defaultServerClockWaitTime = 5;
+	private static final int stationSuggestionWaitTime = 5;
+
+	// the page is checked at this interval while a response of the availability monitor is waited for
+	private static final Duration responseCheckInterval = Duration.ofMillis(50);
+
+	private static final int serverClockMaxSamples = 12;
+	private static final double serverClockPrecisionMillis = 5;
+
+	// Time without layout shift after which the page is considered stable
+	private static final Duration stabilityQuietPeriod = Duration.ofMillis(100);
+
+	private static final long passengerBatchFillTimeoutMillis = 10000;
+
+	// the warm-up before the tatkal trigger ends at least this long before it
+	private static final long warmupMarginMillis = 2000;
+
+	private final WebDriver driver;
+	private final CommandGate commandGate;
+	private final String url;
+	private final BookingPlan plan;
+	private final PhaseTimer phaseTimer;
+	private final boolean tatkalWindow;
+	private final WebDriverWait wait;
+	private final JavascriptExecutor jsExecutor;
+	private final Actions actions;
+	private final PageWaiter waiter;
+	private final ElementCache elements;
+	private final LocatorCatalog locators;
+	private final AvailabilityMonitor availabilityMonitor;
+	private final CompletableFuture<ServerClock> serverClockFuture;
+	private final CompletableFuture<CaptchaReader> captchaReaderFuture;
+	private final DialogWatchdog dialogWatchdog;
+	private final DiagnosticsRecorder diagnostics;
+	private final ResourceFilter resourceFilter;
+	private final RunHistory history;
+	// longest wait for a response of the availability monitor, unless the page shows the result first
+	private final Duration availabilityResponseWait = Duration.ofMillis(
+			Long.getLong("irctc.availability.response_wait_millis", 10000));
+
+	// the steps are waited for with the timeouts derived from the history until one of them fails
+	private boolean adaptiveTimeouts = true;
+
+	// choices left after the search, all of them if the search response was not read
+	private List<BookingPlan.PlannedChoice> choices;
+	private BookingPlan.PlannedChoice selectedChoice = null;
+
+	public SeleniumBookingSite(WebDriver browserDriver, String url, BookingPlan plan, PhaseTimer phaseTimer) {
+		this(browserDriver, url, plan, phaseTimer, null);
+	}
+
+	/*
+	 * With a step history the steps that only wait for the site are given the timeouts derived from it, and the
+	 * steps of a completed run are added to it.
+	 */
+	public SeleniumBookingSite(WebDriver browserDriver, String url, BookingPlan plan, PhaseTimer phaseTimer,
+			RunHistory history) {
+		// the commands of the background threads on the session are kept apart from those of the flow
+		this.commandGate = new CommandGate();
+		this.driver = DriverCommandListener.decorate(browserDriver, phaseTimer, commandGate);
+		this.url = url;
+		this.plan = plan;
+		this.phaseTimer = phaseTimer;
+
+		// elements are waited for by the page waiter, so the implicit wait is never needed
+		driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+
+		LocalTime irctcTatkalWindowStart = LocalTime.of(9, 30).truncatedTo(ChronoUnit.MINUTES);
+		LocalTime irctcTatkalWindowEnd = LocalTime.of(11, 31).truncatedTo(ChronoUnit.MINUTES);
+		LocalTime indiaLocalTime = LocalTime.now(indiaZoneId);
+
+		this.tatkalWindow = indiaLocalTime.isAfter(irctcTatkalWindowStart)
+				&& indiaLocalTime.isBefore(irctcTatkalWindowEnd);
+
+		// the offset to the booking server clock is estimated in the background while signing in
+		this.serverClockFuture = tatkalWindow && plan.isTatkal()
+				? CompletableFuture.supplyAsync(() -> estimateServerClock(url)) : null;
+
+		// the OCR is loaded in the background too, and only if it is used
+		this.captchaReaderFuture = plan.isCaptchaTextExtractionEnabled() ? CaptchaReader.load() : null;
+
+		this.wait = new WebDriverWait(driver, Duration.ofSeconds(defaultExplicitWaitTime));
+		this.jsExecutor = (JavascriptExecutor) driver;
+		this.actions = new Actions(driver);
+		this.waiter = new PageWaiter(driver, Duration.ofSeconds(defaultElementWaitTime));
+		this.elements = new ElementCache(waiter);
+		this.locators = LocatorCatalog.load();
+		this.availabilityMonitor = AvailabilityMonitor.install(browserDriver);
+		this.dialogWatchdog = DialogWatchdog.start(browserDriver, commandGate);
+		this.diagnostics = DiagnosticsRecorder.start(browserDriver, commandGate, phaseTimer);
+		this.resourceFilter = ResourceFilter.getInstalled(browserDriver);
+		this.choices = plan.getChoices();
+		this.history = history;
+	}
+
+	@Override
+	public void open() {
+		driver.get(url);
+		phaseTimer.mark("page_load");
+	}
+
+	/*
+	 * The failure is shown in the browser if it is left open, so that the user taking over sees why the flow
+	 * stopped.
+	 */
+	@Override
+	public void finish(Exception failure, boolean keepOpen) throws Exception {
+		try {
+			// the page is read before the alert is shown, the archive is written in the background
+			if (diagnostics != null) {
+				if (failure != null) {
+					diagnostics.capture("failure");
+				}
+
+				diagnostics.stop();
+
+				if (failure != null) {
+					diagnostics.writeArchive(failure);
+				}
+
+				phaseTimer.recordDiagnostics(diagnostics.getSummary());
+			}
+
+			// only runs without a recovery, a failed step would be recorded with the time it took to fail
+			Map<String, Long> phases = phaseTimer.getPhaseDurations();
+
+			if (history != null && failure == null && !phases.containsKey("recovery")) {
+				Map<String, Long> steps = new LinkedHashMap<>();
+
+				for (Map.Entry<String, Long> phase : phases.entrySet()) {
+					steps.put(historyStep(phase.getKey()), phase.getValue());
+				}
+
+				history.append(phaseTimer.getStartedAt().toInstant().toEpochMilli(), steps);
+			}
+
+			if (failure != null && keepOpen) {
+				dialogWatchdog.close();
+				jsExecutor.executeScript("window.alert('Exception occurred...')");
+				TimeUnit.SECONDS.sleep(1);
+				driver.switchTo().alert().accept();
+			}
+		} finally {
+			dialogWatchdog.close();
+			phaseTimer.recordDialogWatchdog(dialogWatchdog.getSummary());
+			phaseTimer.recordBackgroundCommands(commandGate.getSummary());
+			phaseTimer.recordElementCache(elements.getStatistics());
+
+			if (resourceFilter != null) {
+				phaseTimer.recordResources(resourceFilter.getSummary());
+			}
+
+			locators.save();
+
+			if (!keepOpen) {
+				driver.quit();
+			}
+		}
+	}
+
+	/*
+	 * The last checkpoint shown by the page, or null to start over with the sign in. A page without any known
+	 * checkpoint (e.g. an error page) is left by opening the booking url again in the same session.
+	 */
+	@Override
+	public BookingState detectCheckpoint() {
+		// the page the step failed on
+		if (diagnostics != null) {
+			diagnostics.capture("failed_step");
+		}
+
+		// the step may have failed only because its timeout was too short for the site now
+		if (adaptiveTimeouts && history != null) {
+			adaptiveTimeouts = false;
+			BookingLog.info("Steps are waited for with the default timeouts from now on.");
+		}
+
+		BookingState[] states = BookingState.values();
+
+		for (int attempt = 0; attempt < 2; attempt++) {
+			for (int i = states.length - 1; i >= 0; i--) {
+				if (states[i].getReachedWhen() != null
+						&& !driver.findElements(states[i].getReachedWhen()).isEmpty()) {
+					return states[i];
+				}
+			}
+
+			if (attempt == 0) {
+				driver.get(url);
+				waiter.awaitFirst(Duration.ofSeconds(defaultElementWaitTime),
+						PageWaiter.present(By.cssSelector("a.loginText")));
+			}
+		}
+
+		return null;
+	}
+
+	/*
+	 * Timeout of a step that only waits for the site (not for the user, e.g. typing a captcha), derived from the
+	 * step history. The steps in the tatkal window are kept apart from the others, the site is slower then.
+	 */
+	private Duration stepTimeout(String step, Duration defaultTimeout) {
+		Duration timeout = history != null && adaptiveTimeouts
+				? history.timeout(historyStep(step), defaultTimeout) : defaultTimeout;
+		phaseTimer.recordStepTimeout(step, timeout, defaultTimeout);
+		return timeout;
+	}
+
+	private String historyStep(String phase) {
+		return tatkalWindow ? "tatkal." + phase : phase;
+	}
+
+	@Override
+	public void signIn() throws Exception {
+
+		//click login
+		WebElement login = locators.find(waiter, "login.link");
+
+		if (login.getText().trim().equalsIgnoreCase("LOGOUT")) {
+			return;
+		} else if (login.getText().trim().equalsIgnoreCase("LOGIN")) {
+			login.click();
+		}
+
+		// username input
+		WebElement userIdInput = locators.find(waiter, "login.username");
+		userIdInput.clear();
+		userIdInput.sendKeys(plan.getUsername());
+
+		// password input
+		WebElement passwordInput = locators.find(waiter, "login.password");
+		wait.until(ExpectedConditions.elementToBeClickable(passwordInput));
+		new Actions(driver).click(passwordInput).perform();
+		passwordInput.clear();
+		passwordInput.sendKeys(plan.getPassword());
+		phaseTimer.mark("login_form");
+
+		// sign in button
+		WebElement signInButton = locators.find(waiter, "login.sign_in");
+
+		if (plan.isCaptchaTextExtractionEnabled()) {
+			extractAndFillCaptchaImageText(signInButton);
+		} else {
+			WebElement captchaInputElement = locators.find(waiter, "captcha.input");
+			captchaInputElement.sendKeys("");
+		}
+
+		// the previous pending transaction popup, if any, is closed by the dialog watchdog
+		wait.until(ExpectedConditions.invisibilityOf(signInButton));
+		phaseTimer.mark("login_captcha");
+		captureStep(BookingState.SIGNED_IN);
+	}
+
+	@Override
+	public void searchTrains() throws Exception {
+
+		/*
+		 * To be used during tatkal window i.e. between 09:30 AM to 11:30 AM.
+		 */
+		if (tatkalWindow) {
+			/*
+			 * Preventing login before threshold time for tatkal booking, i.e. 09:59 AM for
+			 * AC and 10:59 AM for non AC classes.
+			 */
+			if (plan.isTatkal()) {
+				LocalTime indiaLocalTime = LocalTime.now(indiaZoneId);
+
+				if (indiaLocalTime.isBefore(plan.getTatkalLoginThreshold())) {
+					throw new RuntimeException("Trying to login before: " + plan.getTatkalLoginThreshold());
+				}
+			}
+		}
+
+		phaseTimer.mark("login_threshold_check");
+
+		// the search form is opened again when the step is resumed on another page
+
+		if (locators.findNow(waiter, "search.from_station") == null
+				&& locators.findNow(waiter, "search.journey_date") == null) {
+			driver.get(url);
+		}
+
+		// From station
+		selectStation("search.from_station", plan.getFromStation(), plan.getFromStationOption(),
+				"search.from_station_option");
+
+		// To station
+		selectStation("search.to_station", plan.getToStation(), plan.getToStationOption(), "search.to_station_option");
+		phaseTimer.mark("station_autocomplete");
+
+		// Journey date selection
+		WebElement datePickerInput = locators.find(waiter, "search.journey_date");
+		datePickerInput.sendKeys(Keys.CONTROL, "a", Keys.BACK_SPACE);
+		datePickerInput.sendKeys(plan.getJourneyDate());
+
+		// Journey Quota dropdown
+		WebElement journeyQuotaDropdown = locators.find(waiter, "search.journey_quota");
+		actions.click(journeyQuotaDropdown).perform();
+
+		// jouney quota option selection
+		WebElement journeyQuotaOption = locators.find(waiter, "search.journey_quota_options")
+				.findElement(plan.getJourneyQuotaOption());
+		actions.click(journeyQuotaOption).perform();
+
+		// click train search button
+		WebElement trainSearchButton = locators.find(waiter, "search.submit");
+		long searchNanos = System.nanoTime();
+		trainSearchButton.click();
+		phaseTimer.mark("journey_details");
+
+		// choices missing from the search response are left out before the train list is rendered
+		choices = plan.getChoices();
+
+		if (availabilityMonitor != null) {
+			AvailabilityMonitor.TrainList trainList = awaitResponse(
+					timeout -> availabilityMonitor.awaitTrainList(searchNanos, timeout),
+					() -> !driver.findElements(BookingState.SEARCHED.getReachedWhen()).isEmpty());
+
+			if (trainList != null) {
+				List<BookingPlan.PlannedChoice> choices = new ArrayList<>();
+				List<String> missingChoices = new ArrayList<>();
+
+				for (BookingPlan.PlannedChoice choice : plan.getChoices()) {
+					if (trainList.hasClass(choice.getTrainNumber(), choice.getTrainClassCode())) {
+						choices.add(choice);
+					} else {
+						missingChoices.add(choice + (trainList.hasTrain(choice.getTrainNumber())
+								? " (class not available in the train)" : " (train not found)"));
+					}
+				}
+
+				if (choices.isEmpty()) {
+					failWithAlert("No train choice found in the search result: " + missingChoices);
+				} else if (!missingChoices.isEmpty()) {
+					BookingLog.info("Not in the search result: " + missingChoices);
+				}
+
+				this.choices = choices;
+			}
+
+			phaseTimer.mark("train_list_response");
+		}
+
+		// waiting for the train list, which shows every train at once
+		PageWaiter.Condition[] trainConditions = new PageWaiter.Condition[choices.size()];
+
+		for (int i = 0; i < choices.size(); i++) {
+			trainConditions[i] = PageWaiter.present(choices.get(i).getTrain());
+		}
+
+		Duration trainListTimeout = stepTimeout("train_lookup", Duration.ofSeconds(defaultElementWaitTime));
+		PageWaiter.Result trainResult = waiter.awaitFirst(trainListTimeout, trainConditions);
+
+		if (trainResult == null) {
+			throw new NoSuchElementException("Train list not shown within " + trainListTimeout.toMillis() + " ms.");
+		}
+
+		phaseTimer.mark("train_lookup");
+
+		// waiting for ad to load to prevent unnecessary error
+		if (!tatkalWindow) {
+			awaitStable(waiter, trainResult.getElement(), "train_list", Duration.ofSeconds(2));
+		}
+
+		captureStep(BookingState.SEARCHED);
+	}
+
+	@Override
+	public void selectClass() throws Exception {
+
+		/*
+		 * class cells resolved before the tatkal trigger, so that only the clicks are left after it. They are
+		 * taken from a snapshot of the train list read in one script call.
+		 */
+		TrainListSnapshot trainList = TrainListSnapshot.capture(driver);
+		phaseTimer.mark("class_lookup");
+
+		/*
+		 * Sleeping the thread until the tatkal booking start time is reached for the
+		 * specified train class
+		 */
+		if (tatkalWindow) {
+			if (plan.isTatkal()) {
+				// the train class is clicked by the booking server clock, not by the local one
+				ServerClock serverClock = awaitServerClock(serverClockFuture);
+				long fireAtServerMillis = ZonedDateTime.of(LocalDate.now(indiaZoneId), plan.getTatkalStartTime(),
+						indiaZoneId).toInstant().toEpochMilli() + plan.getTatkalSafetyMarginMillis();
+				long timeDifferenceInMillis = (long) (fireAtServerMillis - serverClock.serverMillis());
+
+				if (timeDifferenceInMillis > 0) {
+					// Time remaining for the booking to start should be less than 1 minute (60000
+					// milliseconds).
+					if (timeDifferenceInMillis > 60000) {
+						throw new RuntimeException("More than one minute is remaining for the booking to start.");
+					}
+
+					// the commands right after the trigger are sent on a warmed up client and connection
+					if (DriverWarmup.getConfiguredRounds() > 0 && timeDifferenceInMillis > warmupMarginMillis) {
+						long warmupDeadlineNanos = System.nanoTime()
+								+ (timeDifferenceInMillis - warmupMarginMillis) * 1_000_000;
+						// sent through the listener as the flow commands are, but not recorded as commands of the flow
+						int warmupFirstCommand = phaseTimer.getCommandCount();
+						Map<String, Object> warmup = DriverWarmup.run(driver, DriverWarmup.getConfiguredRounds(),
+								warmupDeadlineNanos);
+						phaseTimer.discardCommandsSince(warmupFirstCommand);
+						phaseTimer.recordWarmup(warmup);
+						BookingLog.info("Driver warm-up: " + warmup.get("rounds") + " rounds in "
+								+ warmup.get("elapsedMillis") + " ms");
+					}
+
+					// paused before the wait, so that a poll in progress does not hold up the trigger
+					dialogWatchdog.pause();
+					TatkalScheduler.awaitServerTime(serverClock, fireAtServerMillis);
+				}
+
+				phaseTimer.recordTatkalSchedule(serverClock, fireAtServerMillis, serverClock.serverMillis(),
+						plan.getTatkalSafetyMarginMillis());
+			}
+		}
+
+		// no watchdog poll is queued in the browser ahead of the clicks up to 'Book Now'
+		dialogWatchdog.pause();
+		phaseTimer.mark("tatkal_wait");
+		long triggeredAtNanos = System.nanoTime();
+
+		try {
+			// the first choice with the journey date available, on the train list already loaded
+			TrainListSnapshot.Train trainSnapshot = selectAvailableChoice(trainList);
+			ElementCache.Handle train = elements.handle(selectedChoice.getTrain())
+					.seed(trainSnapshot.getCard());
+			phaseTimer.mark("availability_check");
+
+			// click first available date (specified date)
+			TrainListSnapshot.DateCell dateCell = trainSnapshot.getDate(plan.getSeatLinkDate());
+			ElementCache.Handle seatAvailableLink = train.child(plan.getSeatAvailability())
+					.seed(dateCell != null ? dateCell.getCell() : null);
+
+			// waiting for the availability to settle to maintain consistency in selecting available seat
+			seatAvailableLink.run(link -> awaitStable(waiter, link, "seat_availability", Duration.ofMillis(200)));
+			seatAvailableLink.run(link -> actions.click(link).perform());
+
+			// click book now
+			train.child(By.xpath(".//button[contains(text(), 'Book Now')]")).seed(trainSnapshot.getBookNowButton())
+					.run(button -> actions.click(button).perform());
+			phaseTimer.mark("book_now");
+			BookingMetrics.bookNowClicked(System.nanoTime() - triggeredAtNanos);
+		} finally {
+			dialogWatchdog.resume();
+		}
+
+		// the station confirmation dialog (exact stations not mentioned) is accepted by the dialog watchdog
+		waiter.find(BookingState.CLASS_SELECTED.getReachedWhen(),
+				stepTimeout("passenger_form", Duration.ofSeconds(defaultElementWaitTime)));
+		phaseTimer.mark("passenger_form");
+		captureStep(BookingState.CLASS_SELECTED);
+	}
+
+	@Override
+	public void fillPassengers() throws Exception {
+
+		if (!plan.getPassengers().isEmpty()) {
+			// all passengers in one script call, field by field if the filled values could not be verified
+			String batchFillFailure = "batch fill disabled";
+
+			if (plan.isPassengerBatchFillEnabled()) {
+				batchFillFailure = PassengerFormFiller.fill(driver, plan,
+						Duration.ofMillis(passengerBatchFillTimeoutMillis));
+
+				if (batchFillFailure != null) {
+					BookingLog.info("Batch passenger fill not verified (" + batchFillFailure
+							+ "), filling passenger details field by field");
+				}
+			}
+
+			if (batchFillFailure != null) {
+				fillPassengerDetails();
+			}
+
+			phaseTimer.mark("passenger_details");
+		}
+
+		// select 'Consider for Auto Upgradation.' checkbox, unless it was selected by a previous attempt
+		checkOnce(driver, actions, waiter, "autoUpgradation");
+
+		// select 'Book only if confirm berths are allotted.' checkbox
+		checkOnce(driver, actions, waiter, "confirmberths");
+
+		// select 'pay through bhim/upi' radio button
+		WebElement paymentTypeRadio = locators.find(waiter, "passenger.payment_type_upi");
+		actions.click(paymentTypeRadio).perform();
+
+		// click continue button
+		WebElement continueButton = locators.find(waiter, "passenger.continue");
+		actions.click(continueButton).perform();
+		phaseTimer.mark("passenger_options");
+
+		/*
+		 * 'Passengers may get berth allotted in different coaches' dialog box is answered with 'No' by the
+		 * dialog watchdog.
+		 */
+		waiter.find(BookingState.PASSENGERS_FILLED.getReachedWhen(),
+				stepTimeout("review_page", Duration.ofSeconds(defaultElementWaitTime)));
+		phaseTimer.mark("review_page");
+		captureStep(BookingState.PASSENGERS_FILLED);
+	}
+
+	@Override
+	public void reviewBooking() throws Exception {
+
+		// final captcha
+		WebElement captchaInputElement = locators.find(waiter, "captcha.input");
+
+		// continue button for clicking after entering final captcha
+		WebElement continueButtonOnReview = locators.find(waiter, "review.continue");
+
+		// process to extract and fill captcha image and click continue button
+		if (plan.isCaptchaTextExtractionEnabled()) {
+			extractAndFillCaptchaImageText(continueButtonOnReview);
+		} else {
+			// waiting for ad to load to prevent scroll issue
+			if (!tatkalWindow) {
+				awaitStable(waiter, captchaInputElement, "review_captcha", Duration.ofSeconds(1));
+			}
+
+			/*
+			 * scrolling captcha input element in the middle of the page.
+			 */
+			((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView({block: 'center'})",
+					captchaInputElement);
+			captchaInputElement.click();
+		}
+
+		// increased wait time to review the journey
+		waiter.find(BookingState.REVIEWED.getReachedWhen(), Duration.ofSeconds(defaultElementWaitTime * 2));
+		phaseTimer.mark("review_captcha");
+		captureStep(BookingState.REVIEWED);
+	}
+
+	@Override
+	public void pay() throws Exception {
+
+		// the payment options are skipped if a previous attempt already got to the upi page
+		if (locators.findNow(waiter, "payment.upi_id") == null) {
+			WebElement irctcIPayOption = locators.find(waiter, "payment.irctc_ipay");
+
+			// click on irctc ipay option if not selected
+			if (!irctcIPayOption.getDomAttribute("class").contains("bank-type-active")) {
+				wait.until(ExpectedConditions.elementToBeClickable(irctcIPayOption));
+				irctcIPayOption.click();
+			}
+
+			// click on pay and book
+			WebElement payAndBookButton = locators.find(waiter, "payment.pay_and_book");
+			wait.until(ExpectedConditions.elementToBeClickable(payAndBookButton));
+			// payAndBookButton.click();
+			jsExecutor.executeScript("arguments[0].click()", payAndBookButton);
+			phaseTimer.mark("payment_options");
+		}
+
+		// fill upi id
+		WebElement upiIdInput = locators.find(waiter, "payment.upi_id");
+		upiIdInput.clear();
+		upiIdInput.sendKeys(plan.getUpiId());
+
+		// click pay
+		WebElement finalPayButton = locators.find(waiter, "payment.pay");
+		wait.until(ExpectedConditions.elementToBeClickable(finalPayButton));
+		finalPayButton.click();
+		phaseTimer.mark("upi_payment");
+		captureStep(BookingState.PAYMENT);
+	}
+
+	/*
+	 * Types the station code and clicks the suggestion of exactly that station, in the same script call as soon as
+	 * it is shown. The first suggestion is taken if the site did not show the station the way it is expected.
+	 */
+	private void selectStation(String inputName, String stationCode, By stationOption, String firstOptionName) {
+		WebElement stationInput = locators.find(waiter, inputName);
+		stationInput.clear();
+		stationInput.sendKeys(stationCode);
+
+		PageWaiter.Result result = waiter.awaitFirst(Duration.ofSeconds(stationSuggestionWaitTime),
+				PageWaiter.clickWhenVisible(stationOption));
+
+		if (result == null) {
+			BookingLog.info("Suggestion of station " + stationCode + " not shown, selecting the first suggestion");
+			WebElement firstOption = locators.find(waiter, firstOptionName);
+			wait.until(ExpectedConditions.elementToBeClickable(firstOption));
+			firstOption.click();
+		}
+	}
+
+	/*
+	 * Hands the page reached by the step over to the diagnostics recorder, if enabled. The steps from the train class
+	 * up to the review are not captured: reading the page would hold up the commands of the flow in the browser
+	 * while the seats are being taken. A failed step is still captured.
+	 */
+	private void captureStep(BookingState state) {
+		if (diagnostics != null && (state.compareTo(BookingState.CLASS_SELECTED) < 0
+				|| state == BookingState.PAYMENT)) {
+			diagnostics.capture(state.toString());
+		}
+	}
+
+	// Clicks the label of the checkbox unless the checkbox is already checked.
+	private static void checkOnce(WebDriver driver, Actions actions, PageWaiter waiter, String checkboxId) {
+		WebElement label = waiter.find(By.cssSelector("[for='" + checkboxId + "']"));
+		List<WebElement> checkboxes = driver.findElements(By.id(checkboxId));
+
+		if (checkboxes.isEmpty() || !checkboxes.get(0).isSelected()) {
+			actions.click(label).perform();
+		}
+	}
+
+	// Fills the passenger details one field at a time, the way a user would.
+	private void fillPassengerDetails() {
+		List<BookingPlan.PlannedPassenger> passengers = plan.getPassengers();
+
+		for (int i = 1; i <= passengers.size(); i++) {
+			BookingPlan.PlannedPassenger passenger = passengers.get(i - 1);
+
+			// add passenger details
+			ElementCache.Handle appPassenger = elements.handle(By.xpath("(//app-passenger)[" + i + "]"));
+
+			appPassenger.run(form -> actions.moveToElement(form).perform());
+
+			ElementCache.Handle passengerNameInput = appPassenger.child(By.cssSelector("input[placeholder='Name']"));
+
+			// limiting to maximum characters allowed in the passenger name field
+			String passengerName = passengerNameInput.apply(input -> {
+				String passengerNameMaxLength = input.getDomAttribute("maxLength");
+
+				if (passengerNameMaxLength != null) {
+					int maxPassengerNameLength = Integer.parseInt(passengerNameMaxLength);
+
+					if (passenger.getName().length() > maxPassengerNameLength) {
+						return passenger.getName().substring(0, maxPassengerNameLength);
+					}
+				}
+
+				return passenger.getName();
+			});
+
+			// fill passenger name, clearing anything left by the batch fill
+			passengerNameInput.run(input -> {
+				input.clear();
+				input.sendKeys(passengerName);
+			});
+
+			// fill passenger age
+			appPassenger.child(By.cssSelector("input[placeholder='Age']")).run(input -> {
+				input.click();
+				input.clear();
+				input.sendKeys(passenger.getAge());
+			});
+
+			// select passenger gender
+			appPassenger.child(By.cssSelector("select[formcontrolname='passengerGender']")).run(dropdown -> {
+				dropdown.click();
+				dropdown.findElement(passenger.getGenderOption()).click();
+			});
+
+			// select passenger berth preference
+			if (passenger.getBerthOption() != null) {
+				appPassenger.child(By.cssSelector("select[formcontrolname='passengerBerthChoice']")).run(dropdown -> {
+					dropdown.click();
+					dropdown.findElement(passenger.getBerthOption()).click();
+				});
+			}
+
+			// select passenger food preference
+			try {
+				WebElement foodPreferenceDropdown = appPassenger.apply(form -> form
+						.findElements(By.cssSelector("select[formcontrolname='passengerFoodChoice']")).get(0));
+				foodPreferenceDropdown.click();
+				foodPreferenceDropdown.findElement(plan.getFoodPreferenceOption()).click();
+			} catch (Exception e) {
+				// e.printStackTrace();
+			}
+
+			// click add passenger link, unless the form of the next passenger was added by the batch fill
+			if (i < passengers.size() && driver.findElements(By.tagName("app-passenger")).size() <= i) {
+				ElementCache.Handle addPassengerLink = elements
+						.handle(By.xpath("//span[contains(text(), 'Add Passenger')]/parent::a"));
+				addPassengerLink.run(link -> {
+					wait.until(ExpectedConditions.elementToBeClickable(link));
+					actions.click(link).perform();
+				});
+			}
+		}
+	}
+
+	/*
+	 * Clicks the class of each choice in order until the journey date is available in one of them, without
+	 * searching again. The status is taken from the availability response if there is one, otherwise from the
+	 * page. Returns the card of the selected train read after its class was clicked.
+	 */
+	private TrainListSnapshot.Train selectAvailableChoice(TrainListSnapshot trainList)
+			throws InterruptedException {
+		long selectionStartNanos = System.nanoTime();
+		List<String> rejectedChoices = new ArrayList<>();
+
+		for (BookingPlan.PlannedChoice choice : choices) {
+			TrainListSnapshot.Train trainSnapshot = trainList.getTrain(choice.getTrainNumber());
+			ElementCache.Handle train = elements.handle(choice.getTrain())
+					.seed(trainSnapshot == null ? null : trainSnapshot.getCard());
+			ElementCache.Handle trainClassLink = train.child(choice.getTrainClass())
+					.seed(trainList.getClassCell(choice.getTrainNumber(), choice.getTrainClassCode()));
+
+			// the locators are the fallback for cards the snapshot could not read
+			if (trainSnapshot == null || trainList.getClassCell(choice.getTrainNumber(),
+					choice.getTrainClassCode()) == null) {
+				List<WebElement> trains = driver.findElements(choice.getTrain());
+				List<WebElement> trainClassLinks = trains.isEmpty() ? trains
+						: trains.get(0).findElements(choice.getTrainClass());
+
+				if (trainClassLinks.isEmpty()) {
+					rejectedChoices.add(choice + " (not in the train list)");
+					continue;
+				}
+
+				train.seed(trains.get(0));
+				trainClassLink.seed(trainClassLinks.get(0));
+			}
+
+			// scroll to the train (if needed) and click the class, both are resolved again if the train list was
+			// re-rendered during the tatkal wait
+			long classSelectionNanos = System.nanoTime();
+			trainClassLink.run(link -> actions.moveToElement(train.get()).click(link).perform());
+
+			// the status of the date is taken from the availability response or the page, whichever shows it first
+			String availabilityStatus = null;
+
+			if (availabilityMonitor != null) {
+				availabilityStatus = awaitResponse(timeout -> availabilityMonitor.awaitAvailability(
+						choice.getTrainNumber(), choice.getTrainClassCode(), plan.getJourneyLocalDate(),
+						classSelectionNanos, timeout),
+						() -> !train.apply(card -> card.findElements(plan.getSeatAvailability())).isEmpty());
+
+				if (availabilityStatus != null) {
+					BookingLog.info("Availability of " + choice + ": " + availabilityStatus);
+				}
+
+				if (availabilityStatus != null && !AvailabilityMonitor.isAvailable(availabilityStatus)) {
+					rejectedChoices.add(choice + " (" + availabilityStatus + ")");
+					continue;
+				}
+			}
+
+			// status of the date and the 'Book Now' button read from the train card in one script call, once the
+			// date is shown
+			WebElement seatAvailableLink = train.apply(card -> waiter.find(card, plan.getSeatAvailability()));
+			trainSnapshot = train.apply(card -> TrainListSnapshot.capture(driver, card));
+
+			if (trainSnapshot == null) {
+				throw new RuntimeException("Train card of " + choice + " could not be read.");
+			}
+
+			TrainListSnapshot.DateCell dateCell = trainSnapshot.getDate(plan.getSeatLinkDate());
+
+			if (availabilityStatus == null && dateCell != null && !dateCell.isAvailable()) {
+				rejectedChoices.add(choice + " (" + dateCell.getStatus() + ")");
+				continue;
+			} else if (availabilityStatus == null && dateCell == null
+					&& seatAvailableLink.findElements(By.cssSelector("div[class*='AVAILABLE']")).size() == 0) {
+				rejectedChoices.add(choice + " (not available)");
+				continue;
+			}
+
+			phaseTimer.recordTrainChoice(choice.toString(), plan.getChoices().indexOf(choice) + 1, rejectedChoices,
+					System.nanoTime() - selectionStartNanos);
+			selectedChoice = choice;
+			return trainSnapshot;
+		}
+
+		failWithAlert(choices.size() == 1
+				? "Seat not available for the given class in the provided date: " + rejectedChoices.get(0)
+				: "Seat not available for any train choice in the provided date: " + rejectedChoices);
+		return null;
+	}
+
+	/*
+	 * The response of the availability monitor, or null if the page shows what it is waited for first (rendered)
+	 * or it did not arrive within availabilityResponseWait, so that a response missed by DevTools only costs a
+	 * check interval once the page is rendered.
+	 */
+	private <T> T awaitResponse(ResponseWait<T> response, BooleanSupplier rendered) throws InterruptedException {
+		long deadlineNanos = System.nanoTime() + availabilityResponseWait.toNanos();
+
+		while (true) {
+			T result = response.await(responseCheckInterval);
+
+			if (result != null || System.nanoTime() - deadlineNanos >= 0 || rendered.getAsBoolean()) {
+				return result;
+			}
+		}
+	}
+
+	// Shows the message to the user before the flow is stopped with it.
+	private void failWithAlert(String message) throws InterruptedException {
+		// stopped first, any command sent while the alert is open would dismiss it
+		if (diagnostics != null) {
+			diagnostics.capture("failure");
+			diagnostics.stop();
+		}
+
+		dialogWatchdog.close();
+		jsExecutor.executeScript("window.alert(arguments[0])", message);
+		TimeUnit.SECONDS.sleep(alertDisplayTime);
+		throw new RuntimeException(message);
+	}
+
+	private static ServerClock estimateServerClock(String url) {
+		try {
+			return ServerClock.estimate(url, serverClockMaxSamples, serverClockPrecisionMillis);
+		} catch (Exception e) {
+			BookingLog.error("Unable to estimate the booking server clock, the local clock is used", e);
+			return ServerClock.local();
+		}
+	}
+
+	private static ServerClock awaitServerClock(CompletableFuture<ServerClock> serverClockFuture) {
+		try {
+			return serverClockFuture.get(defaultServerClockWaitTime, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			BookingLog.error("Booking server clock not estimated in time, the local clock is used", e);
+			return ServerClock.local();
+		}
+	}
+
+	/*
+	 * Replacement for the fixed sleeps: waits only until the element stops moving, bounded by the sleep it
+	 * replaces, and reports the time taken.
+	 */
+	private void awaitStable(PageWaiter waiter, WebElement element, String name, Duration replacedSleep) {
+		long startNanos = System.nanoTime();
+		boolean stable = waiter.awaitStable(element, stabilityQuietPeriod, replacedSleep);
+		phaseTimer.recordStabilityWait(name, System.nanoTime() - startNanos, stable, replacedSleep);
+	}
+
+	private void extractAndFillCaptchaImageText(WebElement continueButton) {
+		try {
+			WebElement captchaImageElement = waiter.find(By.cssSelector("img.captcha-img"));
+			WebElement captchaInputElement = waiter.find(By.cssSelector("input#captcha"));
+
+			// waiting for ad to load to prevent scroll issue
+			if (!tatkalWindow) {
+				awaitStable(waiter, captchaImageElement, "captcha_image", Duration.ofSeconds(1));
+			}
+
+			/*
+			 * scrolling captcha image element in the middle of the page
+			 * for consistently taking screenshot for image text extraction.
+			 */
+			((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView({block: 'center'})",
+					captchaImageElement);
+
+			// read in memory, without a temporary file
+			byte[] captchaImage = captchaImageElement.getScreenshotAs(OutputType.BYTES);
+			String captchaImageExtractedText = captchaReaderFuture.join()
+					.read(ImageIO.read(new ByteArrayInputStream(captchaImage)));
+			BookingLog.info("\n" + captchaImageExtractedText);
+
+			// filling captcha image text in the input field
+			captchaInputElement.sendKeys(captchaImageExtractedText);
+			new Actions(driver).click(continueButton).perform();
+		} catch (Exception e) {
+			// the captcha is left to be filled by hand
+			BookingLog.error("Captcha text not extracted", e);
+		}
+	}
+
+	// A wait for a response of the availability monitor, null if it did not arrive within the timeout.
+	private interface ResponseWait<T> {
+
+		T await(Duration timeout) throws InterruptedException;
+	}
+}
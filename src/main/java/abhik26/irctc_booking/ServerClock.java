@@ -0,0 +1,180 @@
+package abhik26.irctc_booking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Estimate of the offset between the local clock and the clock of a web server, taken from the HTTP Date
+ * header. The header only has a resolution of one second, so every sample only tells that the server clock
+ * was within a one second window somewhere between sending the request and receiving the response. The
+ * windows of all samples are intersected, and every following request is timed to reach the server right at
+ * the estimated turn of a second, which halves the remaining uncertainty with each sample until it is down
+ * to about half of the round trip time.
+ *
+ * Local time is measured with the monotonic clock from the moment of the estimate, so a system clock
+ * adjustment during the wait does not affect it.
+ */
+public class ServerClock {
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+	private final long baseEpochMillis = System.currentTimeMillis();
+	private final long baseNanos = System.nanoTime();
+
+	private double lowerOffsetMillis = Double.NEGATIVE_INFINITY;
+	private double upperOffsetMillis = Double.POSITIVE_INFINITY;
+	private final List<Double> roundTripMillis = new ArrayList<>();
+
+	private ServerClock() {
+	}
+
+	// Clock without any correction, used when the server could not be reached.
+	public static ServerClock local() {
+		ServerClock clock = new ServerClock();
+		clock.lowerOffsetMillis = 0;
+		clock.upperOffsetMillis = 0;
+		return clock;
+	}
+
+	/*
+	 * Samples the Date header of the url until the offset is known to within the given precision or the number
+	 * of samples is used up.
+	 */
+	public static ServerClock estimate(String url, int maxSamples, double precisionMillis)
+			throws IOException, InterruptedException {
+		ServerClock clock = new ServerClock();
+		URL serverUrl = new URL(url);
+
+		for (int i = 0; i < maxSamples; i++) {
+			clock.waitForNextSecondBoundary();
+
+			double sentAt = clock.localMillis();
+			long serverDate = requestServerDate(serverUrl);
+			double receivedAt = clock.localMillis();
+
+			clock.addSample(serverDate, sentAt, receivedAt);
+
+			if (clock.getUncertaintyMillis() <= precisionMillis) {
+				break;
+			}
+		}
+
+		return clock;
+	}
+
+	private void addSample(long serverDate, double sentAt, double receivedAt) {
+		double lower = serverDate - receivedAt;
+		double upper = serverDate + 1000 - sentAt;
+		roundTripMillis.add(receivedAt - sentAt);
+
+		// samples not overlapping the previous ones mean that a clock was stepped, the latest one wins
+		if (lower > upperOffsetMillis || upper < lowerOffsetMillis) {
+			lowerOffsetMillis = lower;
+			upperOffsetMillis = upper;
+		} else {
+			lowerOffsetMillis = Math.max(lowerOffsetMillis, lower);
+			upperOffsetMillis = Math.min(upperOffsetMillis, upper);
+		}
+	}
+
+	/*
+	 * Sleeps until a request sent now would reach the server right when its clock turns to the next second,
+	 * according to the current estimate. Nothing to wait for before the first sample.
+	 */
+	private void waitForNextSecondBoundary() throws InterruptedException {
+		if (roundTripMillis.isEmpty()) {
+			return;
+		}
+
+		double halfRoundTrip = getMinRoundTripMillis() / 2;
+		double serverArrival = localMillis() + getOffsetMillis() + halfRoundTrip;
+		double boundary = Math.ceil(serverArrival / 1000) * 1000;
+		long sleepMillis = (long) (boundary - serverArrival);
+
+		if (sleepMillis > 0) {
+			TimeUnit.MILLISECONDS.sleep(sleepMillis);
+		}
+	}
+
+	private static long requestServerDate(URL url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("HEAD");
+		connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+		connection.setReadTimeout(CONNECT_TIMEOUT_MILLIS);
+		connection.setUseCaches(false);
+
+		try {
+			connection.getResponseCode();
+			String date = connection.getHeaderField("Date");
+
+			if (date == null) {
+				throw new IOException("No Date header in the response of " + url);
+			}
+
+			return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} finally {
+			// draining the (empty) body keeps the connection alive for the next sample
+			try (InputStream is = connection.getInputStream()) {
+				while (is.read() != -1) {
+				}
+			} catch (IOException e) {
+				// e.printStackTrace();
+			}
+		}
+	}
+
+	// Local wall clock time in epoch milliseconds, advanced by the monotonic clock.
+	public double localMillis() {
+		return baseEpochMillis + (System.nanoTime() - baseNanos) / 1e6;
+	}
+
+	public double serverMillis() {
+		return localMillis() + getOffsetMillis();
+	}
+
+	// Monotonic clock reading at which the server clock shows the given epoch milliseconds.
+	public long nanoTimeAt(long serverEpochMillis) {
+		return baseNanos + (long) ((serverEpochMillis - getOffsetMillis() - baseEpochMillis) * 1e6);
+	}
+
+	// Server clock minus local clock.
+	public double getOffsetMillis() {
+		return (lowerOffsetMillis + upperOffsetMillis) / 2;
+	}
+
+	public double getUncertaintyMillis() {
+		return (upperOffsetMillis - lowerOffsetMillis) / 2;
+	}
+
+	public int getSampleCount() {
+		return roundTripMillis.size();
+	}
+
+	public double getMinRoundTripMillis() {
+		return roundTripMillis.stream().mapToDouble(Double::doubleValue).min().orElse(0);
+	}
+
+	// Spread of the round trip times, an indication of how noisy the samples were.
+	public double getRoundTripJitterMillis() {
+		return roundTripMillis.stream().mapToDouble(Double::doubleValue).max().orElse(0) - getMinRoundTripMillis();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("offset %.1f ms +/- %.1f ms, %d samples, round trip %.1f ms (jitter %.1f ms)",
+				getOffsetMillis(), getUncertaintyMillis(), getSampleCount(), getMinRoundTripMillis(),
+				getRoundTripJitterMillis());
+	}
+
+	public static void main(String[] args) throws Exception {
+		String url = args.length > 0 ? args[0] : "https://www.irctc.co.in/";
+		System.out.println(url + ": " + estimate(url, 12, 5));
+	}
+}
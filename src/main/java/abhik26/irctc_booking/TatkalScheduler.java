@@ -0,0 +1,46 @@
+package abhik26.irctc_booking;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Waits for an instant of the server clock with sub-millisecond precision: the thread is parked until shortly
+ * before the instant (parking alone can oversleep by a millisecond or more, depending on the OS timer) and
+ * then spins on the monotonic clock for the rest.
+ */
+public class TatkalScheduler {
+
+	// Time before the target at which parking stops and spinning starts
+	private static final long SPIN_THRESHOLD_NANOS = 2000000;
+
+	private TatkalScheduler() {
+	}
+
+	/*
+	 * Returns the monotonic clock reading at wake up, which is never before the target. An interrupt ends the
+	 * parking early but the spin still waits for the target.
+	 */
+	public static long awaitServerTime(ServerClock serverClock, long serverEpochMillis) {
+		return awaitNanoTime(serverClock.nanoTimeAt(serverEpochMillis));
+	}
+
+	public static long awaitNanoTime(long targetNanos) {
+		long remainingNanos;
+
+		while ((remainingNanos = targetNanos - System.nanoTime()) > SPIN_THRESHOLD_NANOS) {
+			LockSupport.parkNanos(remainingNanos - SPIN_THRESHOLD_NANOS);
+
+			if (Thread.currentThread().isInterrupted()) {
+				break;
+			}
+		}
+
+		long now;
+
+		while ((now = System.nanoTime()) - targetNanos < 0) {
+			// tells the CPU the thread is spinning (e.g. PAUSE on x86), which frees resources for the sibling thread
+			Thread.onSpinWait();
+		}
+
+		return now;
+	}
+}
@@ -0,0 +1,25 @@
+package abhik26.irctc_booking;
+
+public final class TrainChoice {
+
+	private final String trainNumber;
+	private final TrainClass trainClass;
+
+	public TrainChoice(String trainNumber, TrainClass trainClass) {
+		this.trainNumber = trainNumber;
+		this.trainClass = trainClass;
+	}
+
+	public String getTrainNumber() {
+		return trainNumber;
+	}
+
+	public TrainClass getTrainClass() {
+		return trainClass;
+	}
+
+	@Override
+	public String toString() {
+		return trainNumber + " " + trainClass.getCode();
+	}
+}
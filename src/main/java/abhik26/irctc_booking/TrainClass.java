@@ -0,0 +1,35 @@
+package abhik26.irctc_booking;
+
+public enum TrainClass {
+
+	SECOND_SITTING("2S", false), SLEEPER("SL", false), CHAIR_CAR("CC", true), AC_3_ECONOMY("3E", true),
+	AC_3_TIER("3A", true), AC_2_TIER("2A", true), AC_FIRST_CLASS("1A", true);
+
+	private final String code;
+	private final boolean ac;
+
+	TrainClass(String code, boolean ac) {
+		this.code = code;
+		this.ac = ac;
+	}
+
+	// Class code as shown on the website, e.g. 3A
+	public String getCode() {
+		return code;
+	}
+
+	public boolean isAc() {
+		return ac;
+	}
+
+	// null if the code is not a supported class
+	public static TrainClass fromCode(String code) {
+		for (TrainClass trainClass : values()) {
+			if (trainClass.code.equalsIgnoreCase(code)) {
+				return trainClass;
+			}
+		}
+
+		return null;
+	}
+}
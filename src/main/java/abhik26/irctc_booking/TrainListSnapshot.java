@@ -0,0 +1,186 @@
+package abhik26.irctc_booking;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/*
+ * The train list read in a single script call: every train card with its class cells, the date cells of the
+ * class whose availability is shown and the 'Book Now' button, together with the element references. Lookups
+ * by train number, class and date are map lookups instead of one XPath query over the whole page each.
+ * A snapshot is not updated, it is captured again (usually for a single card) once the page has changed.
+ */
+public class TrainListSnapshot {
+
+	private static final String EXTRACT_SCRIPT = ""
+			+ "var root = arguments[0], trains = [];"
+			+ "var cards = root ? [root] : document.querySelectorAll('div.border-all');"
+			+ "for (var i = 0; i < cards.length; i++) {"
+			+ "  var card = cards[i], train = { card: card, classes: [], dates: [], bookNow: null };"
+			+ "  var heading = card.querySelectorAll('strong');"
+			+ "  for (var j = 0; j < heading.length && !train.number; j++) {"
+			+ "    var number = /\\((\\d+)\\)/.exec(heading[j].textContent);"
+			+ "    if (number) { train.number = number[1]; }"
+			+ "  }"
+			+ "  if (!train.number && !root) { continue; }"
+			+ "  var cells = card.querySelectorAll('td');"
+			+ "  for (var j = 0; j < cells.length; j++) {"
+			+ "    var strongs = cells[j].querySelectorAll('strong');"
+			+ "    if (!strongs.length) { continue; }"
+			+ "    var text = strongs[0].textContent.trim(), trainClass = /\\(([0-9A-Z]{1,3})\\)$/.exec(text);"
+			+ "    if (trainClass) {"
+			+ "      train.classes.push({ code: trainClass[1], cell: cells[j] });"
+			+ "    } else if (/^[A-Z][a-z]{2}, \\d{2} [A-Z][a-z]{2}/.test(text)) {"
+			+ "      train.dates.push({ date: text, cell: cells[j],"
+			+ "        status: strongs.length > 1 ? strongs[strongs.length - 1].textContent.trim() : '',"
+			+ "        available: !!cells[j].querySelector(\"div[class*='AVAILABLE']\") });"
+			+ "    }"
+			+ "  }"
+			+ "  var buttons = card.querySelectorAll('button');"
+			+ "  for (var j = 0; j < buttons.length && !train.bookNow; j++) {"
+			+ "    if (buttons[j].textContent.indexOf('Book Now') >= 0) { train.bookNow = buttons[j]; }"
+			+ "  }"
+			+ "  trains.push(train);"
+			+ "}"
+			+ "return trains;";
+
+	private final Map<String, Train> trains = new LinkedHashMap<>();
+	private final Map<String, WebElement> classCells = new LinkedHashMap<>();
+
+	@SuppressWarnings("unchecked")
+	private TrainListSnapshot(List<Object> result) {
+		for (Object entry : result) {
+			Train train = new Train((Map<String, Object>) entry);
+			trains.put(train.number, train);
+
+			for (Map.Entry<String, WebElement> classCell : train.classCells.entrySet()) {
+				classCells.put(key(train.number, classCell.getKey()), classCell.getValue());
+			}
+		}
+	}
+
+	// Every train card of the train list.
+	public static TrainListSnapshot capture(WebDriver driver) {
+		return new TrainListSnapshot(extract(driver, null));
+	}
+
+	/*
+	 * A single train card, e.g. to read the dates once the availability of a class is shown. null only if the
+	 * script returned nothing.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Train capture(WebDriver driver, WebElement trainCard) {
+		List<Object> result = extract(driver, trainCard);
+		return result.isEmpty() ? null : new Train((Map<String, Object>) result.get(0));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> extract(WebDriver driver, WebElement trainCard) {
+		Object result = ((JavascriptExecutor) driver).executeScript(EXTRACT_SCRIPT, trainCard);
+		return result instanceof List ? (List<Object>) result : Collections.emptyList();
+	}
+
+	// null if the train is not in the list
+	public Train getTrain(String trainNumber) {
+		return trains.get(trainNumber);
+	}
+
+	public Map<String, Train> getTrains() {
+		return Collections.unmodifiableMap(trains);
+	}
+
+	// null if the train or the class is not in the list
+	public WebElement getClassCell(String trainNumber, String trainClass) {
+		return classCells.get(key(trainNumber, trainClass));
+	}
+
+	private static String key(String trainNumber, String trainClass) {
+		return trainNumber + "/" + trainClass.toUpperCase();
+	}
+
+	public static class Train {
+
+		private final String number;
+		private final WebElement card;
+		private final Map<String, WebElement> classCells = new LinkedHashMap<>();
+		private final Map<String, DateCell> dates = new LinkedHashMap<>();
+		private final WebElement bookNowButton;
+
+		@SuppressWarnings("unchecked")
+		private Train(Map<String, Object> train) {
+			number = String.valueOf(train.get("number"));
+			card = (WebElement) train.get("card");
+			bookNowButton = (WebElement) train.get("bookNow");
+
+			for (Map<String, Object> trainClass : (List<Map<String, Object>>) train.get("classes")) {
+				classCells.put(String.valueOf(trainClass.get("code")), (WebElement) trainClass.get("cell"));
+			}
+
+			for (Map<String, Object> date : (List<Map<String, Object>>) train.get("dates")) {
+				DateCell dateCell = new DateCell(String.valueOf(date.get("date")), (WebElement) date.get("cell"),
+						String.valueOf(date.get("status")), Boolean.TRUE.equals(date.get("available")));
+				dates.put(dateCell.date, dateCell);
+			}
+		}
+
+		public String getNumber() {
+			return number;
+		}
+
+		public WebElement getCard() {
+			return card;
+		}
+
+		// Class cells by class code (e.g. 3A), in the order of the card
+		public Map<String, WebElement> getClassCells() {
+			return Collections.unmodifiableMap(classCells);
+		}
+
+		// null if the date is not shown, date as in the date cell, e.g. "Thu, 22 Oct"
+		public DateCell getDate(String date) {
+			return dates.get(date);
+		}
+
+		// null if the card has no 'Book Now' button
+		public WebElement getBookNowButton() {
+			return bookNowButton;
+		}
+	}
+
+	public static class DateCell {
+
+		private final String date;
+		private final WebElement cell;
+		private final String status;
+		private final boolean available;
+
+		private DateCell(String date, WebElement cell, String status, boolean available) {
+			this.date = date;
+			this.cell = cell;
+			this.status = status;
+			this.available = available;
+		}
+
+		public String getDate() {
+			return date;
+		}
+
+		public WebElement getCell() {
+			return cell;
+		}
+
+		// Status as shown, e.g. AVAILABLE-0012 or WL 23
+		public String getStatus() {
+			return status;
+		}
+
+		public boolean isAvailable() {
+			return available;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package abhik26.irctc_booking;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.openqa.selenium.WebDriver;
+
+/*
+ * Drives the complete booking flow against the local stand-in server N times and reports p50/p95/p99 time
+ * per phase. Usage: BookingBenchmark [runs] [server response delay in millis]
+ */
+public class BookingBenchmark {
+
+	private static final DateTimeFormatter journeyDateFormatter = DateTimeFormatter.ofPattern("dd/MM/uuuu");
+
+	public static void main(String[] args) throws Exception {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int responseDelayMillis = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+		// the ad of the stand-in pages is blocked along with the ad hosts, unless other urls to block are given
+		if (Boolean.parseBoolean(System.getProperty("irctc.block.ads", "true"))
+				&& System.getProperty("irctc.block.urls") == null) {
+			System.setProperty("irctc.block.urls", StandInServer.AD_URL_PATTERN);
+		}
+
+		BookingRequest request = BookingRequest.fromProperties(benchmarkProperties());
+
+		Map<String, List<Long>> phaseSamples = new LinkedHashMap<>();
+		List<Long> totalSamples = new ArrayList<>();
+		int failures = 0;
+
+		try (StandInServer standInServer = new StandInServer(0).start()) {
+			standInServer.setResponseDelayMillis(responseDelayMillis);
+
+			for (int run = 1; run <= runs; run++) {
+				WebDriver driver = DriverUtility.getDriver();
+				boolean completed;
+
+				try {
+					completed = IRCTCBooking.startBooking(driver, standInServer.getTrainSearchUrl(), request);
+				} finally {
+					driver.quit();
+				}
+
+				if (!completed) {
+					failures++;
+					System.out.println("Run " + run + " failed");
+					continue;
+				}
+
+				long total = 0;
+
+				for (Map.Entry<String, Long> phase : IRCTCBooking.getPhaseTimer().getPhaseDurations().entrySet()) {
+					phaseSamples.computeIfAbsent(phase.getKey(), key -> new ArrayList<>()).add(phase.getValue());
+					total += phase.getValue();
+				}
+
+				IRCTCBooking.getPhaseTimer().writeSummary(true);
+				totalSamples.add(total);
+				System.out.println(String.format("Run %d completed in %.1f ms", run, total / 1e6));
+			}
+		}
+
+		BookingLog.flush(5000);
+		System.out.println(String.format("%nRuns: %d, failures: %d%n", runs, failures));
+		System.out.println(String.format("%-26s %10s %10s %10s %10s", "phase", "p50 (ms)", "p95 (ms)", "p99 (ms)",
+				"max (ms)"));
+
+		for (Map.Entry<String, List<Long>> phase : phaseSamples.entrySet()) {
+			printPercentiles(phase.getKey(), phase.getValue());
+		}
+
+		printPercentiles("total", totalSamples);
+	}
+
+	static Properties benchmarkProperties() {
+		LocalDate journeyDate = LocalDate.now(ZoneId.of("Asia/Kolkata")).plusDays(5);
+		Properties properties = new Properties();
+		properties.setProperty("irctc_username", "benchmark");
+		properties.setProperty("irctc_password", "benchmark");
+		properties.setProperty("from_station_code", "HWH");
+		properties.setProperty("to_station_code", "DLI");
+		properties.setProperty("journey_date", journeyDate.format(journeyDateFormatter));
+		properties.setProperty("journey_quota", "GENERAL");
+		properties.setProperty("train_number", "12311");
+		properties.setProperty("train_class", "3A");
+		properties.setProperty("passenger_count", "3");
+		properties.setProperty("passenger1", "Abhishek Anand | 25 | M | SL");
+		properties.setProperty("passenger2", "Isha Anand | 20 | F | SU");
+		properties.setProperty("passenger3", "Priyanshu Anand | 15 | M");
+		properties.setProperty("passenger_food_preference", "D");
+		properties.setProperty("upi_id", "benchmark@upi");
+		properties.setProperty("captcha_text_extraction_enabled", "false");
+		return properties;
+	}
+
+	private static void printPercentiles(String name, List<Long> samples) {
+		if (samples.isEmpty()) {
+			return;
+		}
+
+		long[] sorted = samples.stream().mapToLong(Long::longValue).toArray();
+		Arrays.sort(sorted);
+
+		System.out.println(String.format("%-26s %10.1f %10.1f %10.1f %10.1f", name, percentile(sorted, 50) / 1e6,
+				percentile(sorted, 95) / 1e6, percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6));
+	}
+
+	// Nearest-rank percentile of sorted samples.
+	static long percentile(long[] sorted, double percentile) {
+		int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+	}
+}
@@ -0,0 +1,120 @@
+package abhik26.irctc_booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+class BookingRequestTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2026, 10, 17);
+
+	@Test
+	void fallbackChoicesFollowTheRequestedTrainInOrder() {
+		Properties properties = tatkalProperties("3A");
+		properties.setProperty("fallback_choices", " 12301 : 2A,12381:CC ");
+
+		List<TrainChoice> choices = request(properties).getChoices();
+
+		assertEquals(3, choices.size());
+		assertChoice("12311", TrainClass.AC_3_TIER, choices.get(0));
+		assertChoice("12301", TrainClass.AC_2_TIER, choices.get(1));
+		assertChoice("12381", TrainClass.CHAIR_CAR, choices.get(2));
+	}
+
+	@Test
+	void emptyFallbackChoicesAreOnlyTheRequestedTrain() {
+		Properties properties = tatkalProperties("3A");
+		properties.setProperty("fallback_choices", " ");
+
+		assertEquals(1, request(properties).getChoices().size());
+	}
+
+	@Test
+	void fallbackChoiceWithoutClassIsRejected() {
+		assertInvalid("Invalid value for property: fallback_choices. Choices should be <train number>:<train class>.",
+				"3A", "12301");
+	}
+
+	@Test
+	void fallbackChoiceWithInvalidTrainNumberIsRejected() {
+		assertInvalid("Invalid value for property: fallback_choices. Invalid train number: RAJDHANI", "3A",
+				"RAJDHANI:2A");
+	}
+
+	@Test
+	void fallbackChoiceWithInvalidClassIsRejected() {
+		assertInvalid("Invalid value for property: fallback_choices. Invalid train class: 4A", "3A", "12301:4A");
+	}
+
+	@Test
+	void tatkalFirstClassIsRejected() {
+		assertInvalid("'1A' train class not applicable for 'TATKAL' journey quota.", "1A", null);
+		assertInvalid("'1A' train class not applicable for 'TATKAL' journey quota.", "3A", "12301:1A");
+	}
+
+	@Test
+	void tatkalChoicesMixingAcAndNonAcClassesAreRejected() {
+		String message = "Invalid value for property: fallback_choices. Classes of 'TATKAL' choices should all be AC"
+				+ " or all non AC, like train_class.";
+
+		assertInvalid(message, "3A", "12301:SL");
+		assertInvalid(message, "SL", "12301:3E");
+		assertInvalid(message, "2S", "12301:CC");
+	}
+
+	@Test
+	void generalChoicesMayMixAcAndNonAcClasses() {
+		Properties properties = tatkalProperties("1A");
+		properties.setProperty("journey_quota", "GENERAL");
+		properties.setProperty("fallback_choices", "12301:SL,12381:1A");
+
+		List<TrainChoice> choices = request(properties).getChoices();
+
+		assertChoice("12301", TrainClass.SLEEPER, choices.get(1));
+		assertChoice("12381", TrainClass.AC_FIRST_CLASS, choices.get(2));
+	}
+
+	private static void assertInvalid(String message, String trainClass, String fallbackChoices) {
+		Properties properties = tatkalProperties(trainClass);
+
+		if (fallbackChoices != null) {
+			properties.setProperty("fallback_choices", fallbackChoices);
+		}
+
+		assertEquals(message, assertThrows(RuntimeException.class, () -> request(properties)).getMessage());
+	}
+
+	private static void assertChoice(String trainNumber, TrainClass trainClass, TrainChoice choice) {
+		assertEquals(trainNumber, choice.getTrainNumber());
+		assertEquals(trainClass, choice.getTrainClass());
+	}
+
+	private static BookingRequest request(Properties properties) {
+		return new BookingRequest(properties, TODAY);
+	}
+
+	// Valid tatkal request for tomorrow, 2 passengers.
+	private static Properties tatkalProperties(String trainClass) {
+		Properties properties = new Properties();
+		properties.setProperty("irctc_username", "user");
+		properties.setProperty("irctc_password", "password");
+		properties.setProperty("from_station_code", "HWH");
+		properties.setProperty("to_station_code", "NDLS");
+		properties.setProperty("journey_date", "18/10/2026");
+		properties.setProperty("journey_quota", "TATKAL");
+		properties.setProperty("train_number", "12311");
+		properties.setProperty("train_class", trainClass);
+		properties.setProperty("passenger_count", "2");
+		properties.setProperty("passenger1", "Abhishek Anand | 25 | M | SL");
+		properties.setProperty("passenger2", "Isha Anand | 20 | F");
+		properties.setProperty("passenger_food_preference", "D");
+		properties.setProperty("upi_id", "user@upi");
+		properties.setProperty("captcha_text_extraction_enabled", "false");
+		return properties;
+	}
+}
@@ -0,0 +1,85 @@
+package abhik26.irctc_booking;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+
+/*
+ * Compares driver configurations by the time to interactive of the train search page: the time from
+ * driver.get() until the login link is visible, together with the browser start up time and the time
+ * driver.get() itself blocks, which depends on the page load strategy. Runs against the local stand-in server
+ * unless the irctc.benchmark.url system property is set (e.g. https://www.irctc.co.in/nget/train-search).
+ *
+ * Usage: DriverBenchmark [runs] [driver spec...], e.g.
+ *   DriverBenchmark 5 page_load_strategy=normal page_load_strategy=eager headless=new,page_load_strategy=eager
+ */
+public class DriverBenchmark {
+
+	private static final By LOGIN_LINK = By.cssSelector("a.loginText");
+
+	public static void main(String[] args) throws Exception {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		List<String> specs = args.length > 1 ? Arrays.asList(args).subList(1, args.length)
+				: Arrays.asList("page_load_strategy=normal", "page_load_strategy=eager", "page_load_strategy=none");
+
+		try (StandInServer standInServer = new StandInServer(0).start()) {
+			String url = System.getProperty("irctc.benchmark.url", standInServer.getTrainSearchUrl());
+			System.out.println("Time to interactive of: " + url + "\n");
+			System.out.println(String.format("%-70s %12s %12s %12s %12s", "driver", "start (ms)", "get (ms)",
+					"tti p50 (ms)", "tti p95 (ms)"));
+
+			for (String spec : specs) {
+				DriverConfig config = DriverConfig.fromSpec(spec);
+				List<Long> startSamples = new ArrayList<>();
+				List<Long> getSamples = new ArrayList<>();
+				List<Long> interactiveSamples = new ArrayList<>();
+
+				for (int run = 0; run < runs; run++) {
+					long startNanos = System.nanoTime();
+					WebDriver driver = DriverUtility.getDriver(config);
+
+					try {
+						long getStartNanos = System.nanoTime();
+						driver.get(url);
+						long getEndNanos = System.nanoTime();
+
+						PageWaiter waiter = new PageWaiter(driver, Duration.ofSeconds(60));
+
+						if (waiter.awaitFirst(Duration.ofSeconds(60), PageWaiter.visible(LOGIN_LINK)) == null) {
+							System.out.println(config + ": login link not visible within 60 seconds");
+							continue;
+						}
+
+						long interactiveNanos = System.nanoTime();
+						startSamples.add(getStartNanos - startNanos);
+						getSamples.add(getEndNanos - getStartNanos);
+						interactiveSamples.add(interactiveNanos - getStartNanos);
+					} finally {
+						driver.quit();
+					}
+				}
+
+				System.out.println(String.format("%-70s %12.1f %12.1f %12.1f %12.1f", config,
+						median(startSamples) / 1e6, median(getSamples) / 1e6,
+						percentile(interactiveSamples, 50) / 1e6, percentile(interactiveSamples, 95) / 1e6));
+			}
+		}
+	}
+
+	private static long median(List<Long> samples) {
+		return percentile(samples, 50);
+	}
+
+	private static long percentile(List<Long> samples, double percentile) {
+		if (samples.isEmpty()) {
+			return 0;
+		}
+
+		long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+		return BookingBenchmark.percentile(sorted, percentile);
+	}
+}
@@ -0,0 +1,141 @@
+package abhik26.irctc_booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RunHistoryTest {
+
+	private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+
+	@TempDir
+	Path runsDir;
+
+	private String previousRunsDir;
+
+	@BeforeEach
+	void setRunsDir() {
+		previousRunsDir = System.setProperty("irctc.runs.dir", runsDir.toString());
+	}
+
+	@AfterEach
+	void restoreRunsDir() {
+		if (previousRunsDir == null) {
+			System.clearProperty("irctc.runs.dir");
+		} else {
+			System.setProperty("irctc.runs.dir", previousRunsDir);
+		}
+	}
+
+	@Test
+	void percentileIsTheNearestRank() {
+		long[] sorted = LongStream.rangeClosed(1, 100).toArray();
+
+		assertEquals(1, RunHistory.percentile(sorted, 0));
+		assertEquals(50, RunHistory.percentile(sorted, 50));
+		assertEquals(99, RunHistory.percentile(sorted, 99));
+		assertEquals(100, RunHistory.percentile(sorted, 100));
+		assertEquals(10, RunHistory.percentile(LongStream.rangeClosed(1, 10).toArray(), 99));
+		assertEquals(7, RunHistory.percentile(new long[] { 7 }, 99));
+	}
+
+	@Test
+	void timeoutIsThreeTimesTheP99() throws IOException {
+		// 10 to 1000 ms, p99 990 ms
+		writeHistory(samples("search", 1, 100, 10_000));
+
+		assertEquals(Duration.ofMillis(2970), RunHistory.load().timeout("search", DEFAULT_TIMEOUT));
+	}
+
+	@Test
+	void timeoutIsClampedToOneSecondAndTheDefault() throws IOException {
+		List<String> lines = new ArrayList<>(samples("fast", 1, 100, 1_000));
+		lines.addAll(samples("slow", 1, 100, 10_000));
+		writeHistory(lines);
+		RunHistory history = RunHistory.load();
+
+		// 3 x 99 ms
+		assertEquals(Duration.ofSeconds(1), history.timeout("fast", DEFAULT_TIMEOUT));
+		// 3 x 990 ms
+		assertEquals(Duration.ofSeconds(2), history.timeout("slow", Duration.ofSeconds(2)));
+	}
+
+	@Test
+	void timeoutIsTheDefaultWithoutEnoughSamples() throws IOException {
+		writeHistory(samples("search", 1, 19, 10_000));
+		RunHistory history = RunHistory.load();
+
+		assertEquals(DEFAULT_TIMEOUT, history.timeout("search", DEFAULT_TIMEOUT));
+		assertEquals(DEFAULT_TIMEOUT, history.timeout("login", DEFAULT_TIMEOUT));
+	}
+
+	@Test
+	void truncatedLinesAreSkipped() throws IOException {
+		List<String> lines = new ArrayList<>(samples("search", 1, 3, 1_000));
+		lines.add("1700000000004,sear");
+		lines.add("1700000000005,search,");
+		lines.add("17000000");
+		lines.add("1700000000006,search,12.");
+		writeHistory(lines);
+
+		assertEquals(Collections.singletonMap("search", 3), RunHistory.load().getSampleCounts());
+	}
+
+	@Test
+	void compactionKeepsTheLatestSamplesWithTheirRunStart() throws Exception {
+		// one line short of compacting, at 200 samples and 3 lines per sample
+		writeHistory(samples("search", 1, 600, 1));
+		RunHistory history = RunHistory.load();
+
+		history.append(601, Collections.singletonMap("search", 601_000L));
+		BookingLog.flush(5000);
+
+		List<String> lines = Files.readAllLines(historyFile(), StandardCharsets.UTF_8);
+		assertEquals(samples("search", 402, 601, 1), lines);
+		assertEquals(Collections.singletonMap("search", 200), RunHistory.load().getSampleCounts());
+	}
+
+	@Test
+	void truncatedLinesCountTowardsCompaction() throws Exception {
+		List<String> lines = new ArrayList<>(samples("search", 1, 599, 1));
+		lines.add("600,search,");
+		writeHistory(lines);
+
+		RunHistory.load().append(601, Collections.singletonMap("search", 601_000L));
+		BookingLog.flush(5000);
+
+		assertEquals(200, Files.readAllLines(historyFile(), StandardCharsets.UTF_8).size());
+	}
+
+	// Lines of a step with the samples first to last times the micros, each taken in a run started at its number.
+	private static List<String> samples(String step, int first, int last, long micros) {
+		List<String> lines = new ArrayList<>();
+
+		for (int i = first; i <= last; i++) {
+			lines.add(i + "," + step + "," + i * micros);
+		}
+
+		return lines;
+	}
+
+	private void writeHistory(List<String> lines) throws IOException {
+		Files.write(historyFile(), lines, StandardCharsets.UTF_8);
+	}
+
+	private Path historyFile() {
+		return runsDir.resolve("step-history.csv");
+	}
+}
@@ -0,0 +1,71 @@
+package abhik26.irctc_booking;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Runs the booking flow N times against the simulated site and reports the bookings per second, the driver
+ * commands per phase and the p50/p99 time per phase. Without command latency this measures the flow itself,
+ * with it the effect of the number of commands. Usage: SimulatedBookingBenchmark [runs] [command latency in
+ * micros] [failure rate per command]
+ */
+public class SimulatedBookingBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		Duration commandLatency = Duration.ofNanos(args.length > 1 ? Long.parseLong(args[1]) * 1000 : 0);
+		double failureRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.001;
+
+		BookingPlan plan = BookingPlan.compile(BookingRequest.fromProperties(BookingBenchmark.benchmarkProperties()));
+		PhaseTimer phaseTimer = new PhaseTimer(false);
+
+		Map<String, List<Long>> phaseSamples = new LinkedHashMap<>();
+		Map<String, Long> phaseCommands = new LinkedHashMap<>();
+		long commands = 0;
+		long injectedFailures = 0;
+		int failures = 0;
+		long startNanos = System.nanoTime();
+
+		for (int run = 0; run < runs; run++) {
+			SimulatedBookingSite site = new SimulatedBookingSite(plan, phaseTimer, commandLatency, failureRate, run);
+			phaseTimer.reset();
+
+			if (!IRCTCBooking.runBooking(site, phaseTimer) || !site.isPaid()) {
+				failures++;
+			}
+
+			for (Map.Entry<String, Long> phase : phaseTimer.getPhaseDurations().entrySet()) {
+				phaseSamples.computeIfAbsent(phase.getKey(), key -> new ArrayList<>()).add(phase.getValue());
+			}
+
+			for (PhaseTimer.CommandTiming command : phaseTimer.getCommandTimings()) {
+				phaseCommands.merge(String.valueOf(command.getPhase()), 1L, Long::sum);
+			}
+
+			commands += site.getCommands();
+			injectedFailures += site.getInjectedFailures();
+		}
+
+		long elapsedNanos = System.nanoTime() - startNanos;
+		BookingLog.flush(5000);
+
+		System.out.println(String.format("%nRuns: %d, failures: %d, injected command failures: %d", runs, failures,
+				injectedFailures));
+		System.out.println(String.format("%.0f bookings per second, %.1f commands per booking%n",
+				runs / (elapsedNanos / 1e9), (double) commands / runs));
+		System.out.println(String.format("%-26s %10s %10s %10s", "phase", "commands", "p50 (us)", "p99 (us)"));
+
+		for (Map.Entry<String, List<Long>> phase : phaseSamples.entrySet()) {
+			long[] sorted = phase.getValue().stream().mapToLong(Long::longValue).toArray();
+			Arrays.sort(sorted);
+
+			System.out.println(String.format("%-26s %10.1f %10.1f %10.1f", phase.getKey(),
+					(double) phaseCommands.getOrDefault(phase.getKey(), 0L) / runs,
+					BookingBenchmark.percentile(sorted, 50) / 1e3, BookingBenchmark.percentile(sorted, 99) / 1e3));
+		}
+	}
+}
@@ -0,0 +1,414 @@
+package abhik26.irctc_booking;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openqa.selenium.StaleElementReferenceException;
+
+/*
+ * An in-memory model of the booking site: the page shown, whether the user is signed in and the availability of
+ * the train choices. Each step sends the same driver commands, in the same order, as the step of
+ * SeleniumBookingSite (to be kept in step with it), and each command takes the configured latency and fails with
+ * the configured probability, as a stale element would. The commands are recorded in the phase timer like the
+ * ones of a browser, so that the number and order of the commands of a step can be compared without the noise
+ * of a browser, thousands of bookings per second without latency.
+ */
+public class SimulatedBookingSite implements BookingSite {
+
+	private static final String URL = "simulated://irctc/nget/train-search";
+
+	private static enum Page {
+		TRAIN_SEARCH, TRAIN_LIST, PASSENGER_FORM, REVIEW, PAYMENT_OPTIONS, UPI_PAYMENT, PAID
+	}
+
+	private final BookingPlan plan;
+	private final PhaseTimer phaseTimer;
+	private final long commandLatencyNanos;
+	private final double failureRate;
+	private final Random random;
+	private final Set<String> unavailableChoices = new HashSet<>();
+	private final Map<String, Integer> commandCounts = new LinkedHashMap<>();
+
+	private Page page = null;
+	private boolean signedIn = false;
+	private boolean inStep = false;
+	private BookingPlan.PlannedChoice selectedChoice = null;
+	private int commands = 0;
+	private int injectedFailures = 0;
+
+	/*
+	 * failureRate is the probability of any command of a step failing, seed makes the failures the same from
+	 * one run to the next.
+	 */
+	public SimulatedBookingSite(BookingPlan plan, PhaseTimer phaseTimer, Duration commandLatency, double failureRate,
+			long seed) {
+		this.plan = plan;
+		this.phaseTimer = phaseTimer;
+		this.commandLatencyNanos = commandLatency.toNanos();
+		this.failureRate = failureRate;
+		this.random = new Random(seed);
+	}
+
+	// The journey date is shown as not available for the train class, e.g. to exercise the fallback choices.
+	public SimulatedBookingSite setUnavailable(String trainNumber, String trainClassCode) {
+		unavailableChoices.add(trainNumber + "/" + trainClassCode);
+		return this;
+	}
+
+	@Override
+	public void open() {
+		command("get", URL);
+		page = Page.TRAIN_SEARCH;
+		phaseTimer.mark("page_load");
+	}
+
+	@Override
+	public BookingState detectCheckpoint() {
+		BookingState[] states = BookingState.values();
+
+		for (int attempt = 0; attempt < 2; attempt++) {
+			for (int i = states.length - 1; i >= 0; i--) {
+				if (states[i].getReachedWhen() != null) {
+					command("findElements", states[i].toString());
+
+					if (isShown(states[i])) {
+						return states[i];
+					}
+				}
+			}
+
+			if (attempt == 0) {
+				command("get", URL);
+				page = Page.TRAIN_SEARCH;
+				command("executeAsyncScript", "login.link");
+			}
+		}
+
+		return null;
+	}
+
+	private boolean isShown(BookingState state) {
+		switch (state) {
+			case SIGNED_IN:
+				return signedIn && page != Page.PAID;
+			case SEARCHED:
+				return page == Page.TRAIN_LIST;
+			case CLASS_SELECTED:
+				return page == Page.PASSENGER_FORM;
+			case PASSENGERS_FILLED:
+				return page == Page.REVIEW;
+			case REVIEWED:
+				return page == Page.PAYMENT_OPTIONS || page == Page.UPI_PAYMENT;
+			default:
+				return false;
+		}
+	}
+
+	@Override
+	public void signIn() {
+		step(() -> {
+			command("executeAsyncScript", "login.link");
+			command("getText", "login.link");
+
+			if (signedIn) {
+				return;
+			}
+
+			command("getText", "login.link");
+			command("click", "login.link");
+			command("executeAsyncScript", "login.username");
+			command("clear", "login.username");
+			command("sendKeys", "login.username");
+			command("executeAsyncScript", "login.password");
+			clickable("login.password");
+			command("perform", "login.password");
+			command("clear", "login.password");
+			command("sendKeys", "login.password");
+			phaseTimer.mark("login_form");
+
+			command("executeAsyncScript", "login.sign_in");
+			command("executeAsyncScript", "captcha.input");
+			command("sendKeys", "captcha.input");
+			command("isDisplayed", "login.sign_in");
+			signedIn = true;
+			phaseTimer.mark("login_captcha");
+		});
+	}
+
+	@Override
+	public void searchTrains() {
+		step(() -> {
+			phaseTimer.mark("login_threshold_check");
+			command("executeAsyncScript", "search.from_station");
+
+			if (page != Page.TRAIN_SEARCH) {
+				command("executeAsyncScript", "search.journey_date");
+				command("get", URL);
+				page = Page.TRAIN_SEARCH;
+			}
+
+			for (String station : new String[] { "search.from_station", "search.to_station" }) {
+				command("executeAsyncScript", station);
+				command("clear", station);
+				command("sendKeys", station);
+				command("executeAsyncScript", station + "_option");
+			}
+
+			phaseTimer.mark("station_autocomplete");
+
+			command("executeAsyncScript", "search.journey_date");
+			command("sendKeys", "search.journey_date");
+			command("sendKeys", "search.journey_date");
+			command("executeAsyncScript", "search.journey_quota");
+			command("perform", "search.journey_quota");
+			command("executeAsyncScript", "search.journey_quota_options");
+			command("findElement", "search.journey_quota_option");
+			command("perform", "search.journey_quota_option");
+			command("executeAsyncScript", "search.submit");
+			command("click", "search.submit");
+			phaseTimer.mark("journey_details");
+
+			command("executeAsyncScript", "train_list");
+			page = Page.TRAIN_LIST;
+			phaseTimer.mark("train_lookup");
+		});
+	}
+
+	@Override
+	public void selectClass() {
+		step(() -> {
+			command("executeScript", "train_list_snapshot");
+			phaseTimer.mark("class_lookup");
+			phaseTimer.mark("tatkal_wait");
+
+			long selectionStartNanos = System.nanoTime();
+			List<String> rejectedChoices = new ArrayList<>();
+			selectedChoice = null;
+
+			for (BookingPlan.PlannedChoice choice : plan.getChoices()) {
+				command("perform", choice.toString());
+				command("executeAsyncScript", "seat_availability");
+				command("executeScript", "train_card_snapshot");
+
+				if (unavailableChoices.contains(choice.getTrainNumber() + "/" + choice.getTrainClassCode())) {
+					rejectedChoices.add(choice + " (WL 23)");
+					continue;
+				}
+
+				phaseTimer.recordTrainChoice(choice.toString(), plan.getChoices().indexOf(choice) + 1,
+						rejectedChoices, System.nanoTime() - selectionStartNanos);
+				selectedChoice = choice;
+				break;
+			}
+
+			if (selectedChoice == null) {
+				command("executeScript", "alert");
+				throw new RuntimeException("Seat not available for any train choice in the provided date: "
+						+ rejectedChoices);
+			}
+
+			phaseTimer.mark("availability_check");
+
+			command("executeAsyncScript", "seat_availability_stable");
+			command("perform", "seat_availability");
+			command("perform", "book_now");
+			phaseTimer.mark("book_now");
+			BookingMetrics.bookNowClicked(System.nanoTime() - selectionStartNanos);
+
+			command("executeAsyncScript", "passenger_form");
+			page = Page.PASSENGER_FORM;
+			phaseTimer.mark("passenger_form");
+		});
+	}
+
+	@Override
+	public void fillPassengers() {
+		step(() -> {
+			if (!plan.getPassengers().isEmpty()) {
+				if (plan.isPassengerBatchFillEnabled()) {
+					command("executeAsyncScript", "passenger_batch_fill");
+				} else {
+					fillPassengerDetails();
+				}
+
+				phaseTimer.mark("passenger_details");
+			}
+
+			for (String checkbox : new String[] { "autoUpgradation", "confirmberths" }) {
+				command("executeAsyncScript", checkbox);
+				command("findElements", checkbox);
+				command("isSelected", checkbox);
+				command("perform", checkbox);
+			}
+
+			command("executeAsyncScript", "passenger.payment_type_upi");
+			command("perform", "passenger.payment_type_upi");
+			command("executeAsyncScript", "passenger.continue");
+			command("perform", "passenger.continue");
+			phaseTimer.mark("passenger_options");
+
+			command("executeAsyncScript", "review_page");
+			page = Page.REVIEW;
+			phaseTimer.mark("review_page");
+		});
+	}
+
+	// The commands of the field by field fill, for each passenger.
+	private void fillPassengerDetails() {
+		for (int i = 1; i <= plan.getPassengers().size(); i++) {
+			BookingPlan.PlannedPassenger passenger = plan.getPassengers().get(i - 1);
+
+			command("findElement", "app-passenger");
+			command("perform", "app-passenger");
+			command("findElement", "passenger_name");
+			command("getDomAttribute", "passenger_name");
+			command("clear", "passenger_name");
+			command("sendKeys", "passenger_name");
+			command("findElement", "passenger_age");
+			command("click", "passenger_age");
+			command("clear", "passenger_age");
+			command("sendKeys", "passenger_age");
+			command("findElement", "passenger_gender");
+			command("click", "passenger_gender");
+			command("findElement", "passenger_gender_option");
+			command("click", "passenger_gender_option");
+
+			if (passenger.getBerthOption() != null) {
+				command("findElement", "passenger_berth");
+				command("click", "passenger_berth");
+				command("findElement", "passenger_berth_option");
+				command("click", "passenger_berth_option");
+			}
+
+			command("findElements", "passenger_food");
+
+			if (i < plan.getPassengers().size()) {
+				command("findElements", "app-passenger");
+				command("findElement", "add_passenger");
+				clickable("add_passenger");
+				command("perform", "add_passenger");
+			}
+		}
+	}
+
+	@Override
+	public void reviewBooking() {
+		step(() -> {
+			command("executeAsyncScript", "captcha.input");
+			command("executeAsyncScript", "review.continue");
+			command("executeScript", "captcha.input");
+			command("click", "captcha.input");
+			command("executeAsyncScript", "payment_page");
+			page = Page.PAYMENT_OPTIONS;
+			phaseTimer.mark("review_captcha");
+		});
+	}
+
+	@Override
+	public void pay() {
+		step(() -> {
+			command("executeAsyncScript", "payment.upi_id");
+
+			if (page != Page.UPI_PAYMENT) {
+				command("executeAsyncScript", "payment.irctc_ipay");
+				command("getDomAttribute", "payment.irctc_ipay");
+				clickable("payment.irctc_ipay");
+				command("click", "payment.irctc_ipay");
+				command("executeAsyncScript", "payment.pay_and_book");
+				clickable("payment.pay_and_book");
+				command("executeScript", "payment.pay_and_book");
+				page = Page.UPI_PAYMENT;
+				phaseTimer.mark("payment_options");
+			}
+
+			command("executeAsyncScript", "payment.upi_id");
+			command("clear", "payment.upi_id");
+			command("sendKeys", "payment.upi_id");
+			command("executeAsyncScript", "payment.pay");
+			clickable("payment.pay");
+			command("click", "payment.pay");
+			page = Page.PAID;
+			phaseTimer.mark("upi_payment");
+		});
+	}
+
+	@Override
+	public void finish(Exception failure, boolean keepOpen) {
+		if (failure != null && keepOpen) {
+			command("executeScript", "alert");
+		}
+
+		if (!keepOpen) {
+			command("quit", URL);
+		}
+	}
+
+	public boolean isPaid() {
+		return page == Page.PAID;
+	}
+
+	// null until a choice was available
+	public BookingPlan.PlannedChoice getSelectedChoice() {
+		return selectedChoice;
+	}
+
+	public int getCommands() {
+		return commands;
+	}
+
+	public int getInjectedFailures() {
+		return injectedFailures;
+	}
+
+	// Commands sent by name (findElement, click etc.), in the order they were first sent.
+	public Map<String, Integer> getCommandCounts() {
+		return commandCounts;
+	}
+
+	// Failures are only injected into the commands of a step, like the ones the flow retries.
+	private void step(Runnable step) {
+		inStep = true;
+
+		try {
+			step.run();
+		} finally {
+			inStep = false;
+		}
+	}
+
+	// ExpectedConditions.elementToBeClickable, which checks the element is displayed and enabled.
+	private void clickable(String target) {
+		command("isDisplayed", target);
+		command("isEnabled", target);
+	}
+
+	private void command(String command, String target) {
+		long startNanos = System.nanoTime();
+		long endNanos = startNanos;
+
+		if (commandLatencyNanos > 0) {
+			long deadline = startNanos + commandLatencyNanos;
+
+			while ((endNanos = System.nanoTime()) < deadline) {
+				LockSupport.parkNanos(deadline - endNanos);
+			}
+		}
+
+		boolean failed = inStep && failureRate > 0 && random.nextDouble() < failureRate;
+		phaseTimer.recordCommand(command, target, startNanos, endNanos, failed);
+		commands++;
+		commandCounts.merge(command, 1, Integer::sum);
+
+		if (failed) {
+			injectedFailures++;
+			throw new StaleElementReferenceException("Simulated failure of " + command + " on " + target);
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package abhik26.irctc_booking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.json.Json;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Local stand-in for the IRCTC website, serving synthetic copies of the train search, train list, passenger,
+ * review and payment pages with the same selectors used by the booking flow. Captcha inputs are filled and
+ * submitted by the pages themselves, so the complete flow can run without manual intervention.
+ */
+public class StandInServer implements AutoCloseable {
+
+	private static final String RESOURCE_PREFIX = "standin/";
+	private static final String TRAIN_LIST_PATH = "/eticketing/protected/mapps1/altAvlEnq/TC";
+	private static final String AVAILABILITY_PATH = "/eticketing/protected/mapps1/avlFarenquiry/";
+
+	// url pattern (irctc.block.urls) of the ad shown by the pages, which is not on any of the real ad hosts
+	public static final String AD_URL_PATTERN = "*/adserver/*";
+
+	private static final DateTimeFormatter availabilityRequestDateFormatter = DateTimeFormatter.ofPattern("uuuuMMdd");
+	private static final DateTimeFormatter availabilityResponseDateFormatter = DateTimeFormatter.ofPattern("d-M-uuuu");
+
+	private static final Map<String, String> PAGES = new HashMap<>();
+
+	static {
+		PAGES.put("/nget/train-search", "train-search.html");
+		PAGES.put("/nget/booking/train-list", "train-list.html");
+		PAGES.put("/nget/booking/psgninput", "passenger.html");
+		PAGES.put("/nget/booking/reviewBooking", "review.html");
+		PAGES.put("/nget/payment/bkgPaymentOptions", "payment-options.html");
+		PAGES.put("/pgui/upi", "upi.html");
+		PAGES.put("/standin.js", "standin.js");
+		PAGES.put("/standin.css", "standin.css");
+		PAGES.put("/adserver/banner.js", "banner.js");
+	}
+
+	private static final String[][] TRAINS = {
+			{ "12311", "KALKA MAIL", "1A 2A 3A SL" },
+			{ "12301", "HWH RAJDHANI", "1A 2A 3A" },
+			{ "12381", "POORVA EXPRESS", "2A 3A SL" },
+			{ "12313", "SDAH RAJDHANI", "1A 2A 3A" },
+			{ "12303", "POORVA EXPRESS", "2A 3A SL" },
+			{ "12321", "HWH MUMBAI MAIL", "2A 3A SL 2S" },
+			{ "12273", "HWH NDLS DURONTO", "1A 2A 3A" },
+			{ "12259", "SDAH BKN DURONTO", "2A 3A 3E SL" } };
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Json json = new Json();
+	private final Map<String, String> availabilityOverrides = new ConcurrentHashMap<>();
+
+	private volatile int responseDelayMillis = 0;
+	private volatile int fillerTrainCount = 20;
+	private volatile boolean stationConfirmDialog = false;
+	private volatile boolean coachesDialog = false;
+	private volatile boolean pendingTransactionPopup = false;
+	private volatile int captchaDelayMillis = 300;
+	private volatile int adDelayMillis = 500;
+
+	public StandInServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "standin-http");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	public StandInServer start() {
+		server.start();
+		return this;
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public String getTrainSearchUrl() {
+		return "http://127.0.0.1:" + getPort() + "/nget/train-search";
+	}
+
+	// Delay added to every JSON response to mimic the booking server under load.
+	public void setResponseDelayMillis(int responseDelayMillis) {
+		this.responseDelayMillis = responseDelayMillis;
+	}
+
+	// Number of additional generated trains in the result list to keep the DOM comparable to the live site.
+	public void setFillerTrainCount(int fillerTrainCount) {
+		this.fillerTrainCount = fillerTrainCount;
+	}
+
+	public void setStationConfirmDialog(boolean stationConfirmDialog) {
+		this.stationConfirmDialog = stationConfirmDialog;
+	}
+
+	public void setCoachesDialog(boolean coachesDialog) {
+		this.coachesDialog = coachesDialog;
+	}
+
+	public void setPendingTransactionPopup(boolean pendingTransactionPopup) {
+		this.pendingTransactionPopup = pendingTransactionPopup;
+	}
+
+	// Time the pages take to "type" the captcha once the captcha input receives focus.
+	public void setCaptchaDelayMillis(int captchaDelayMillis) {
+		this.captchaDelayMillis = captchaDelayMillis;
+	}
+
+	// Time after which every page inserts an ad banner above its content, negative for no ads.
+	public void setAdDelayMillis(int adDelayMillis) {
+		this.adDelayMillis = adDelayMillis;
+	}
+
+	/*
+	 * Overrides the availability status (e.g. "WL 23", "REGRET/WL") of a train class for every date. Classes
+	 * without an override are reported as available.
+	 */
+	public void setAvailability(String trainNumber, String trainClass, String status) {
+		availabilityOverrides.put(trainNumber + "/" + trainClass.toUpperCase(), status);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getPath();
+
+			if (PAGES.containsKey(path)) {
+				sendResource(exchange, PAGES.get(path));
+			} else if ("/standin/config.js".equals(path)) {
+				sendConfig(exchange);
+			} else if (TRAIN_LIST_PATH.equals(path)) {
+				delayResponse();
+				send(exchange, 200, "application/json",
+						json.toJson(trainList(queryParameters(exchange.getRequestURI()))));
+			} else if (path.startsWith(AVAILABILITY_PATH)) {
+				delayResponse();
+				send(exchange, 200, "application/json", json.toJson(availability(path)));
+			} else {
+				send(exchange, 404, "text/plain", "Not found: " + path);
+			}
+		} catch (Exception e) {
+			send(exchange, 500, "text/plain", String.valueOf(e));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void sendConfig(HttpExchange exchange) throws IOException {
+		Map<String, Object> config = new LinkedHashMap<>();
+		config.put("stationConfirmDialog", stationConfirmDialog);
+		config.put("coachesDialog", coachesDialog);
+		config.put("pendingTransactionPopup", pendingTransactionPopup);
+		config.put("captchaDelayMillis", captchaDelayMillis);
+		config.put("adDelayMillis", adDelayMillis);
+		send(exchange, 200, "application/javascript", "window.STANDIN = " + json.toJson(config) + ";");
+	}
+
+	private Map<String, Object> trainList(Map<String, String> parameters) {
+		List<Map<String, Object>> trains = new ArrayList<>();
+
+		for (String[] train : TRAINS) {
+			trains.add(trainEntry(train[0], train[1], train[2], parameters));
+		}
+
+		for (int i = 0; i < fillerTrainCount; i++) {
+			trains.add(trainEntry(String.valueOf(22801 + i * 2), "SUPERFAST EXPRESS " + (i + 1), "2A 3A SL",
+					parameters));
+		}
+
+		Map<String, Object> response = new LinkedHashMap<>();
+		response.put("trainBtwnStnsList", trains);
+		response.put("quotaList", Arrays.asList("GN", "TQ", "PT", "LD"));
+		return response;
+	}
+
+	private Map<String, Object> trainEntry(String number, String name, String classes,
+			Map<String, String> parameters) {
+		Map<String, Object> train = new LinkedHashMap<>();
+		train.put("trainNumber", number);
+		train.put("trainName", name);
+		train.put("fromStnCode", parameters.getOrDefault("from", "HWH"));
+		train.put("toStnCode", parameters.getOrDefault("to", "DLI"));
+		train.put("departureTime", String.format("%02d:%02d", (number.hashCode() & 0x7fffffff) % 24, 5));
+		train.put("avlClasses", Arrays.asList(classes.split(" ")));
+		return train;
+	}
+
+	// path: /avlFarenquiry/{train}/{date}/{from}/{to}/{class}/{quota}/N
+	private Map<String, Object> availability(String path) {
+		String[] segments = path.substring(AVAILABILITY_PATH.length()).split("/");
+
+		if (segments.length < 6) {
+			throw new RuntimeException("Invalid availability enquiry: " + path);
+		}
+
+		String trainNumber = segments[0];
+		LocalDate journeyDate = LocalDate.parse(segments[1], availabilityRequestDateFormatter);
+		String trainClass = segments[4].toUpperCase();
+		String status = availabilityOverrides.getOrDefault(trainNumber + "/" + trainClass, "AVAILABLE-0012");
+
+		List<Map<String, Object>> days = new ArrayList<>();
+
+		for (int i = 0; i < 6; i++) {
+			Map<String, Object> day = new LinkedHashMap<>();
+			day.put("availablityDate", journeyDate.plusDays(i).format(availabilityResponseDateFormatter));
+			day.put("availablityStatus", status);
+			days.add(day);
+		}
+
+		Map<String, Object> response = new LinkedHashMap<>();
+		response.put("trainNo", trainNumber);
+		response.put("enqClass", trainClass);
+		response.put("quota", segments[5]);
+		response.put("avlDayList", days);
+		return response;
+	}
+
+	private void delayResponse() throws InterruptedException {
+		if (responseDelayMillis > 0) {
+			TimeUnit.MILLISECONDS.sleep(responseDelayMillis);
+		}
+	}
+
+	private static Map<String, String> queryParameters(URI uri) {
+		Map<String, String> parameters = new HashMap<>();
+		String query = uri.getQuery();
+
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int index = pair.indexOf('=');
+
+				if (index > 0) {
+					parameters.put(pair.substring(0, index), pair.substring(index + 1));
+				}
+			}
+		}
+
+		return parameters;
+	}
+
+	private static void sendResource(HttpExchange exchange, String name) throws IOException {
+		try (InputStream is = ClassLoader.getSystemClassLoader().getResourceAsStream(RESOURCE_PREFIX + name)) {
+			if (is == null) {
+				send(exchange, 404, "text/plain", "Missing stand-in resource: " + name);
+				return;
+			}
+
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+
+			while ((read = is.read(buffer)) > 0) {
+				content.write(buffer, 0, read);
+			}
+
+			String contentType = name.endsWith(".js") ? "application/javascript"
+					: name.endsWith(".css") ? "text/css" : "text/html";
+			send(exchange, 200, contentType, content.toByteArray());
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		send(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+		exchange.getResponseHeaders().set("Cache-Control", "no-store");
+
+		// HEAD requests (e.g. clock sampling) get the headers only
+		if ("HEAD".equalsIgnoreCase(exchange.getRequestMethod())) {
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+
+		exchange.sendResponseHeaders(status, body.length);
+
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		StandInServer standInServer = new StandInServer(port).start();
+		System.out.println("IRCTC stand-in running at: " + standInServer.getTrainSearchUrl());
+	}
+}
@@ -0,0 +1,74 @@
+package abhik26.irctc_booking;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+/*
+ * Startup of the script up to its first driver commands, without a browser: reading the booking request, compiling
+ * the plan, loading the locators, creating the driver session and opening a page against a local endpoint
+ * answering as a driver would (WebDriverStub). Prints the time from the JVM start to each of them. It is also
+ * the training run of the class data sharing archive (appcds profile): the classes it loads from the booking jar
+ * are the ones archived, its own classes are not part of the jar and are left out.
+ */
+public class StartupBenchmark {
+
+	// loaded after the measurement for the archive, the booking loads them as soon as it starts
+	private static final String[] flowClassNames = { "abhik26.irctc_booking.IRCTCBooking",
+			"abhik26.irctc_booking.SeleniumBookingSite", "abhik26.irctc_booking.PageWaiter",
+			"abhik26.irctc_booking.ElementCache", "abhik26.irctc_booking.DialogWatchdog",
+			"abhik26.irctc_booking.DiagnosticsRecorder", "abhik26.irctc_booking.AvailabilityMonitor",
+			"abhik26.irctc_booking.ResourceFilter", "abhik26.irctc_booking.TrainListSnapshot",
+			"abhik26.irctc_booking.PassengerFormFiller", "abhik26.irctc_booking.TatkalScheduler",
+			"abhik26.irctc_booking.ServerClock", "abhik26.irctc_booking.BookingMetrics",
+			"abhik26.irctc_booking.RunHistory", "abhik26.irctc_booking.DriverWarmup",
+			"org.openqa.selenium.chrome.ChromeDriver", "org.openqa.selenium.chrome.ChromeDriverService",
+			"org.openqa.selenium.interactions.Actions", "org.openqa.selenium.support.ui.WebDriverWait",
+			"org.openqa.selenium.support.ui.ExpectedConditions" };
+
+	public static void main(String[] args) throws Exception {
+		Map<String, Long> reachedAtNanos = new LinkedHashMap<>();
+		reachedAtNanos.put("main", System.nanoTime());
+
+		BookingRequest request = BookingRequest.fromProperties(BookingBenchmark.benchmarkProperties());
+		reachedAtNanos.put("request", System.nanoTime());
+
+		BookingPlan.compile(request);
+		reachedAtNanos.put("plan", System.nanoTime());
+
+		LocatorCatalog.load();
+		reachedAtNanos.put("locators", System.nanoTime());
+
+		try (WebDriverStub stub = new WebDriverStub().start()) {
+			ChromeOptions options = new ChromeOptions();
+			DriverUtility.applyChromiumOptions(options, DriverConfig.fromSystemProperties());
+			WebDriver driver = DriverCommandListener.decorate(new RemoteWebDriver(stub.getUrl(), options),
+					new PhaseTimer(false));
+			reachedAtNanos.put("driver_session", System.nanoTime());
+
+			driver.get("about:blank");
+			reachedAtNanos.put("first_command", System.nanoTime());
+			driver.quit();
+		}
+
+		// read last, the management classes are not part of the startup
+		long sinceJvmStartNanos = (System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime())
+				* 1_000_000;
+		long nowNanos = System.nanoTime();
+
+		System.out.println(String.format("%-16s %12s", "reached", "since JVM start (ms)"));
+
+		for (Map.Entry<String, Long> reached : reachedAtNanos.entrySet()) {
+			System.out.println(String.format("%-16s %12.1f", reached.getKey(),
+					(sinceJvmStartNanos - (nowNanos - reached.getValue())) / 1e6));
+		}
+
+		for (String className : flowClassNames) {
+			Class.forName(className);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package abhik26.irctc_booking;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+/*
+ * Cold and warm latency of each kind of command of the warm-up (DriverWarmup) per HTTP client of the driver
+ * commands, against a local endpoint answering as a driver would (WebDriverStub), so only the client side is
+ * measured. Each driver spec is run in a JVM of its own, so that the first round is cold for every client.
+ *
+ * Usage: TransportBenchmark [rounds] [driver spec...], e.g.
+ *   TransportBenchmark 200 http_client=netty http_client=jdk-http-client
+ */
+public class TransportBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DriverWarmup.getConfiguredRounds();
+		List<String> specs = args.length > 1 ? Arrays.asList(args).subList(1, args.length)
+				: Arrays.asList("http_client=netty", "http_client=jdk-http-client");
+
+		if (specs.size() == 1) {
+			run(rounds, DriverConfig.fromSpec(specs.get(0)));
+			return;
+		}
+
+		for (String spec : specs) {
+			List<String> command = new ArrayList<>(Arrays.asList(System.getProperty("java.home") + File.separator
+					+ "bin" + File.separator + "java", "-Dsun.net.httpserver.nodelay="
+					+ System.getProperty("sun.net.httpserver.nodelay", "false"), "-cp",
+					System.getProperty("java.class.path"), TransportBenchmark.class.getName(), String.valueOf(rounds),
+					spec));
+			new ProcessBuilder(command).inheritIO().start().waitFor();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void run(int rounds, DriverConfig config) throws Exception {
+		if (config.getHttpClient() != null) {
+			System.setProperty("webdriver.http.factory", config.getHttpClient());
+		}
+
+		try (WebDriverStub stub = new WebDriverStub().start()) {
+			ChromeOptions options = new ChromeOptions();
+			DriverUtility.applyChromiumOptions(options, config);
+			WebDriver driver = DriverCommandListener.decorate(new RemoteWebDriver(new HttpCommandExecutor(
+					config.getClientConfig().baseUrl(stub.getUrl())), options), new PhaseTimer(false));
+
+			Map<String, Object> summary;
+
+			try {
+				summary = DriverWarmup.run(driver, rounds, System.nanoTime() + 3_600_000_000_000L);
+			} finally {
+				driver.quit();
+			}
+
+			System.out.println(String.format("%n%s: %d rounds in %.1f ms, %d connections", config,
+					summary.get("rounds"), summary.get("elapsedMillis"), stub.getConnections()));
+			System.out.println(String.format("%-20s %12s %12s", "command", "cold (us)", "warm (us)"));
+
+			for (Map.Entry<String, Object> command : ((Map<String, Object>) summary.get("commands")).entrySet()) {
+				Map<String, Object> latency = (Map<String, Object>) command.getValue();
+				System.out.println(String.format("%-20s %12.1f %12.1f", command.getKey(), latency.get("coldMicros"),
+						latency.get("warmMicros")));
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package abhik26.irctc_booking;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Local endpoint answering the WebDriver commands the way a driver would, without a browser, to measure the client
+ * side of the commands (Selenium, its HTTP client and JSON codecs): a session is created, elements are found, scripts
+ * return true and every other command succeeds without a value. The connections the commands were sent on are
+ * counted, to see that they are kept alive. Run with -Dsun.net.httpserver.nodelay=true (benchmark and appcds
+ * profiles), without it every response body waits for the delayed acknowledgement of its headers, about 40 ms.
+ */
+public class WebDriverStub implements AutoCloseable {
+
+	private static final String ELEMENT = "{\"element-6066-11e4-a52e-4f735466cecf\": \"stub-element\"}";
+
+	private final HttpServer server;
+	private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+	public WebDriverStub() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+	}
+
+	public WebDriverStub start() {
+		server.start();
+		return this;
+	}
+
+	public URL getUrl() throws IOException {
+		return new URL("http://127.0.0.1:" + server.getAddress().getPort());
+	}
+
+	public int getConnections() {
+		return connections.size();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		exchange.getRequestBody().readAllBytes();
+		connections.add(exchange.getRemoteAddress());
+
+		String path = exchange.getRequestURI().getPath();
+		String value;
+
+		if (path.equals("/session")) {
+			value = "{\"sessionId\": \"stub\", \"capabilities\": {\"browserName\": \"chrome\"}}";
+		} else if (path.endsWith("/element")) {
+			value = ELEMENT;
+		} else if (path.endsWith("/elements")) {
+			value = "[" + ELEMENT + ", " + ELEMENT + ", " + ELEMENT + "]";
+		} else if (path.endsWith("/name")) {
+			value = "\"body\"";
+		} else if (path.contains("/execute/")) {
+			value = "true";
+		} else {
+			value = "null";
+		}
+
+		byte[] body = ("{\"value\": " + value + "}").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+/*
+ * Stand-in advertisement: inserted above the page content after a delay, shifting the layout below it like
+ * the ads of the live site do.
+ */
+(function () {
+	var config = window.STANDIN || {};
+
+	setTimeout(function () {
+		var main = document.querySelector('main');
+
+		if (!main) {
+			return;
+		}
+
+		var banner = document.createElement('div');
+		banner.className = 'standin-ad';
+		banner.textContent = 'Advertisement';
+		main.insertBefore(banner, main.firstChild);
+	}, config.adDelayMillis || 0);
+})();
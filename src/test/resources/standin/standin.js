@@ -0,0 +1,420 @@
+/*
+ * Behaviour of the IRCTC stand-in pages. The booking state travels between pages in sessionStorage and the
+ * train list and availability are fetched as JSON from the stand-in server, like the live site does.
+ */
+(function () {
+	var config = window.STANDIN || {};
+	var state = JSON.parse(sessionStorage.getItem('standin') || '{}');
+
+	var DAYS = ['Sun', 'Mon', 'Tue', 'Wed', 'Thu', 'Fri', 'Sat'];
+	var MONTHS = ['Jan', 'Feb', 'Mar', 'Apr', 'May', 'Jun', 'Jul', 'Aug', 'Sep', 'Oct', 'Nov', 'Dec'];
+	var CLASS_NAMES = {
+		'1A': 'AC First Class', '2A': 'AC 2 Tier', '3A': 'AC 3 Tier', '3E': 'AC 3 Economy',
+		'CC': 'AC Chair car', 'SL': 'Sleeper', '2S': 'Second Sitting'
+	};
+	var QUOTA_CODES = { 'GENERAL': 'GN', 'TATKAL': 'TQ', 'PREMIUM TATKAL': 'PT', 'LADIES': 'LD' };
+	var STATIONS = [
+		'HOWRAH JN - HWH', 'SEALDAH - SDAH', 'DELHI - DLI', 'NEW DELHI - NDLS', 'KALKA - KLK',
+		'MUMBAI CENTRAL - MMCT', 'CHENNAI CENTRAL - MAS', 'KSR BENGALURU - SBC', 'BIKANER JN - BKN',
+		'PATNA JN - PNBE', 'ASANSOL JN - ASN', 'DHANBAD JN - DHN', 'GAYA JN - GAYA'
+	];
+
+	function save() {
+		sessionStorage.setItem('standin', JSON.stringify(state));
+	}
+
+	function go(path) {
+		save();
+		location.href = path;
+	}
+
+	function html(markup) {
+		var template = document.createElement('template');
+		template.innerHTML = markup.trim();
+		return template.content.firstChild;
+	}
+
+	function pad(value) {
+		return value < 10 ? '0' + value : '' + value;
+	}
+
+	function parseJourneyDate(value) {
+		var parts = value.split('/');
+		return new Date(+parts[2], +parts[1] - 1, +parts[0]);
+	}
+
+	function seatLinkDate(date) {
+		return DAYS[date.getDay()] + ', ' + pad(date.getDate()) + ' ' + MONTHS[date.getMonth()];
+	}
+
+	function statusClass(status) {
+		if (status.indexOf('AVAILABLE') === 0) {
+			return 'AVAILABLE';
+		}
+
+		return status.indexOf('WL') >= 0 ? 'WL' : 'REGRET';
+	}
+
+	// PrimeNG like confirmation dialog, resolved with the label of the clicked button.
+	function showDialog(labelId, message, buttons, onClick) {
+		var dialog = html('<div class="ui-dialog" role="dialog" aria-labelledby="' + labelId + '">'
+			+ '<span id="' + labelId + '" class="ui-dialog-title">Confirmation</span><p>' + message + '</p></div>');
+		buttons.forEach(function (label) {
+			var button = html('<button type="button"><span class="ui-button-text ui-clickable">' + label
+				+ '</span></button>');
+			button.addEventListener('click', function () {
+				dialog.remove();
+				onClick(label);
+			});
+			dialog.appendChild(button);
+		});
+		document.body.appendChild(dialog);
+	}
+
+	// Simulates the user typing the captcha once the captcha input gets focus and then submitting the form.
+	function autoCaptcha(input, submit) {
+		input.addEventListener('focus', function () {
+			setTimeout(function () {
+				if (!input.value) {
+					input.value = 'STANDIN';
+				}
+				submit();
+			}, config.captchaDelayMillis || 0);
+		}, { once: true });
+	}
+
+	function once(action) {
+		var done = false;
+		return function () {
+			if (!done) {
+				done = true;
+				action.apply(this, arguments);
+			}
+		};
+	}
+
+	function autocomplete(input) {
+		var listId = input.getAttribute('aria-controls');
+
+		input.addEventListener('input', function () {
+			var previous = document.getElementById(listId);
+
+			if (previous) {
+				previous.remove();
+			}
+
+			var query = input.value.trim().toUpperCase();
+
+			setTimeout(function () {
+				if (input.value.trim().toUpperCase() !== query || !query) {
+					return;
+				}
+
+				var list = html('<ul id="' + listId + '" class="ui-autocomplete-items" role="listbox"></ul>');
+				STATIONS.filter(function (station) {
+					return station.indexOf(query) >= 0;
+				}).sort(function (a, b) {
+					return (b.indexOf('- ' + query) >= 0) - (a.indexOf('- ' + query) >= 0);
+				}).forEach(function (station) {
+					var item = html('<li role="option" class="ui-autocomplete-list-item">' + station + '</li>');
+					item.addEventListener('click', function () {
+						input.value = station;
+						input.dataset.code = station.substring(station.lastIndexOf('- ') + 2);
+						list.remove();
+					});
+					list.appendChild(item);
+				});
+				input.parentNode.appendChild(list);
+			}, 150);
+		});
+	}
+
+	var pages = {};
+
+	pages.trainSearch = function () {
+		var loginText = document.querySelector('a.loginText');
+		var loginModal = document.getElementById('login-modal');
+
+		loginText.addEventListener('click', function () {
+			if (loginText.textContent.trim() === 'LOGIN') {
+				loginModal.style.display = 'block';
+			}
+		});
+
+		var signIn = once(function () {
+			loginModal.style.display = 'none';
+			loginText.textContent = 'LOGOUT';
+			state.user = document.querySelector("input[formcontrolname='userid']").value;
+			save();
+
+			if (config.pendingTransactionPopup) {
+				showDialog('ui-dialog-2-label', 'You have a pending transaction.', ['Close'], function () {});
+			}
+		});
+		var signInButton = document.getElementById('sign-in');
+		signInButton.addEventListener('click', signIn);
+		autoCaptcha(loginModal.querySelector('input#captcha'), function () {
+			signInButton.click();
+		});
+
+		autocomplete(document.querySelector("input[aria-controls='pr_id_1_list']"));
+		autocomplete(document.querySelector("input[aria-controls='pr_id_2_list']"));
+
+		var quota = document.getElementById('journeyQuota');
+		var quotaItems = document.querySelector('.ui-dropdown-items-wrapper');
+		quota.addEventListener('click', function () {
+			quotaItems.style.display = quotaItems.style.display === 'block' ? 'none' : 'block';
+		});
+		Array.prototype.forEach.call(quotaItems.querySelectorAll('li'), function (item) {
+			item.addEventListener('click', function (event) {
+				event.stopPropagation();
+				quota.querySelector('label').textContent = item.getAttribute('aria-label');
+				quotaItems.style.display = 'none';
+			});
+		});
+
+		document.querySelector('button.search_btn').addEventListener('click', function (event) {
+			event.preventDefault();
+			var from = document.querySelector("input[aria-controls='pr_id_1_list']").dataset.code;
+			var to = document.querySelector("input[aria-controls='pr_id_2_list']").dataset.code;
+
+			if (!from || !to) {
+				return;
+			}
+
+			state.from = from;
+			state.to = to;
+			state.date = document.querySelector('.ui-calendar input').value.trim();
+			state.quota = quota.querySelector('label').textContent.trim();
+			go('/nget/booking/train-list');
+		});
+	};
+
+	pages.trainList = function () {
+		var journeyDate = parseJourneyDate(state.date);
+		var quotaCode = QUOTA_CODES[state.quota] || 'GN';
+		var requestDate = journeyDate.getFullYear() + pad(journeyDate.getMonth() + 1) + pad(journeyDate.getDate());
+		var container = document.getElementById('train-list');
+
+		function renderAvailability(train, trainClass, card) {
+			var days = card.querySelector('.avl-days');
+			days.innerHTML = '';
+
+			fetch('/eticketing/protected/mapps1/avlFarenquiry/' + [train.trainNumber, requestDate, state.from,
+				state.to, trainClass, quotaCode, 'N'].join('/'), { method: 'POST' })
+				.then(function (response) {
+					return response.json();
+				}).then(function (availability) {
+					var row = html('<table><tbody><tr></tr></tbody></table>');
+					availability.avlDayList.forEach(function (day) {
+						var parts = day.availablityDate.split('-');
+						var date = new Date(+parts[2], +parts[1] - 1, +parts[0]);
+						var cell = html('<td><div class="pre-avl"><strong>' + seatLinkDate(date)
+							+ '</strong></div><div class="' + statusClass(day.availablityStatus) + '"><strong>'
+							+ day.availablityStatus + '</strong></div></td>');
+						cell.addEventListener('click', function () {
+							state.train = train.trainNumber;
+							state.trainName = train.trainName;
+							state.trainClass = trainClass;
+							state.seatDate = seatLinkDate(date);
+							save();
+							card.querySelector('button.book-now').disabled =
+								statusClass(day.availablityStatus) !== 'AVAILABLE';
+						});
+						row.querySelector('tr').appendChild(cell);
+					});
+					days.appendChild(row);
+				});
+		}
+
+		fetch('/eticketing/protected/mapps1/altAvlEnq/TC?from=' + state.from + '&to=' + state.to + '&date='
+			+ requestDate + '&quota=' + quotaCode, { method: 'POST' })
+			.then(function (response) {
+				return response.json();
+			}).then(function (result) {
+				result.trainBtwnStnsList.forEach(function (train) {
+					var card = html('<div class="form-group no-pad col-xs-12 bull-back border-all">'
+						+ '<div class="train-heading"><strong>' + train.trainName + ' (' + train.trainNumber
+						+ ')</strong><span> ' + train.departureTime + ' | ' + train.fromStnCode + ' - '
+						+ train.toStnCode + '</span></div><table class="classes"><tbody><tr></tr></tbody></table>'
+						+ '<div class="avl-days"></div><button type="button" class="btnDefault train_Search book-now"'
+						+ ' disabled>Book Now</button></div>');
+					train.avlClasses.forEach(function (trainClass) {
+						var cell = html('<td><div class="pre-avl"><strong>' + CLASS_NAMES[trainClass] + ' ('
+							+ trainClass + ')</strong><div>Refresh</div></div></td>');
+						cell.addEventListener('click', function () {
+							renderAvailability(train, trainClass, card);
+						});
+						card.querySelector('tr').appendChild(cell);
+					});
+					card.querySelector('button.book-now').addEventListener('click', function () {
+						if (state.train !== train.trainNumber) {
+							return;
+						}
+
+						if (config.stationConfirmDialog) {
+							showDialog('ui-dialog-1-label', 'Boarding station differs from the searched station.',
+								['Yes', 'No'], function (label) {
+									if (label === 'Yes') {
+										go('/nget/booking/psgninput');
+									}
+								});
+						} else {
+							go('/nget/booking/psgninput');
+						}
+					});
+					container.appendChild(card);
+				});
+			});
+	};
+
+	pages.passenger = function () {
+		var passengers = document.getElementById('passengers');
+		var foodChoice = /RAJDHANI|DURONTO|SHATABDI/.test(state.trainName || '');
+
+		function addPassenger() {
+			var passenger = html('<app-passenger><div class="ui-g passenger">'
+				+ '<input type="text" placeholder="Name" maxlength="16" formcontrolname="passengerName">'
+				+ '<input type="number" placeholder="Age" formcontrolname="passengerAge">'
+				+ '<select formcontrolname="passengerGender"><option value="">Gender</option>'
+				+ '<option value="M">Male</option><option value="F">Female</option>'
+				+ '<option value="T">Transgender</option></select>'
+				+ '<select formcontrolname="passengerBerthChoice"><option value="">No Preference</option>'
+				+ '<option value="LB">Lower</option><option value="MB">Middle</option>'
+				+ '<option value="UB">Upper</option><option value="SL">Side Lower</option>'
+				+ '<option value="SU">Side Upper</option><option value="WS">Window Side</option></select>'
+				+ (foodChoice ? '<select formcontrolname="passengerFoodChoice"><option value="">Food Choice</option>'
+					+ '<option value="V">Veg</option><option value="N">Non Veg</option>'
+					+ '<option value="J">Jain Meal</option><option value="F">Veg (Diabetic)</option>'
+					+ '<option value="G">Non Veg (Diabetic)</option><option value="D">No Food</option></select>'
+					: '')
+				+ '</div></app-passenger>');
+			passengers.appendChild(passenger);
+			Array.prototype.forEach.call(passenger.querySelectorAll('[formcontrolname]'), bindControl);
+		}
+
+		/*
+		 * Mimics an Angular form control: the model only follows the element through the input/change events
+		 * of its value accessor, and the control is pristine until one of them is received.
+		 */
+		function bindControl(control) {
+			control.standinModel = '';
+			control.classList.add('ng-untouched', 'ng-pristine', 'ng-valid');
+			control.addEventListener(control.tagName === 'SELECT' ? 'change' : 'input', function () {
+				control.standinModel = control.value;
+				control.classList.remove('ng-pristine');
+				control.classList.add('ng-dirty');
+			});
+			control.addEventListener('blur', function () {
+				control.classList.remove('ng-untouched');
+				control.classList.add('ng-touched');
+			});
+		}
+
+		function model(passenger, selector) {
+			return passenger.querySelector(selector).standinModel;
+		}
+
+		addPassenger();
+		document.getElementById('add-passenger').addEventListener('click', function () {
+			if (passengers.querySelectorAll('app-passenger').length < 6) {
+				addPassenger();
+			}
+		});
+
+		var submit = once(function () {
+			state.passengers = Array.prototype.map.call(passengers.querySelectorAll('app-passenger'), function (p) {
+				return {
+					name: model(p, "input[placeholder='Name']"),
+					age: model(p, "input[placeholder='Age']"),
+					gender: model(p, "select[formcontrolname='passengerGender']"),
+					berth: model(p, "select[formcontrolname='passengerBerthChoice']")
+				};
+			});
+			go('/nget/booking/reviewBooking');
+		});
+
+		document.getElementById('continue').addEventListener('click', function () {
+			var invalid = Array.prototype.some.call(passengers.querySelectorAll('app-passenger'), function (p) {
+				return !model(p, "input[placeholder='Name']")
+					|| !model(p, "input[placeholder='Age']")
+					|| !model(p, "select[formcontrolname='passengerGender']");
+			});
+
+			if (invalid || !document.querySelector("p-radiobutton[id='2'] div[role='radio']")
+				.classList.contains('ui-state-active')) {
+				return;
+			}
+
+			if (config.coachesDialog) {
+				showDialog('ui-dialog-3-label', 'Passengers may get berth allotted in different coaches.',
+					['Yes', 'No'], submit);
+			} else {
+				submit();
+			}
+		});
+
+		Array.prototype.forEach.call(document.querySelectorAll("p-radiobutton div[role='radio']"), function (radio) {
+			radio.addEventListener('click', function () {
+				Array.prototype.forEach.call(document.querySelectorAll("p-radiobutton div[role='radio']"),
+					function (other) {
+						other.classList.remove('ui-state-active');
+					});
+				radio.classList.add('ui-state-active');
+			});
+		});
+	};
+
+	pages.review = function () {
+		document.getElementById('summary').textContent = state.trainName + ' (' + state.train + ') | '
+			+ state.trainClass + ' | ' + state.seatDate + ' | ' + (state.passengers || []).length + ' passenger(s)';
+
+		var captcha = document.querySelector('input#captcha');
+		var submit = once(function () {
+			go('/nget/payment/bkgPaymentOptions');
+		});
+		var continueButton = document.getElementById('continue');
+		continueButton.addEventListener('click', function () {
+			if (captcha.value) {
+				submit();
+			}
+		});
+		autoCaptcha(captcha, function () {
+			continueButton.click();
+		});
+	};
+
+	pages.paymentOptions = function () {
+		var iPay = document.getElementById('ipay');
+		iPay.addEventListener('click', function () {
+			iPay.classList.add('bank-type-active');
+		});
+		document.getElementById('pay-and-book').addEventListener('click', function () {
+			if (iPay.classList.contains('bank-type-active')) {
+				go('/pgui/upi');
+			}
+		});
+	};
+
+	pages.upi = function () {
+		document.getElementById('upi-sbmt').addEventListener('click', function () {
+			var vpa = document.getElementById('vpaCheck').value.trim();
+
+			if (vpa.indexOf('@') > 0) {
+				document.body.appendChild(html('<div id="standin-complete">Payment request sent to ' + vpa
+					+ '</div>'));
+			}
+		});
+	};
+
+	document.addEventListener('DOMContentLoaded', function () {
+		pages[document.body.dataset.page]();
+
+		// ad script loaded from an ad server path, so that it can be blocked like the ads of the live site
+		if (config.adDelayMillis >= 0) {
+			var ad = document.createElement('script');
+			ad.src = '/adserver/banner.js';
+			document.head.appendChild(ad);
+		}
+	});
+})();